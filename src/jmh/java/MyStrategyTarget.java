@@ -0,0 +1,60 @@
+import benchmark.StrategyTarget;
+import model.Game;
+import model.Move;
+import model.Player;
+
+import static model.VehicleType.ARRV;
+import static model.VehicleType.IFV;
+import static model.VehicleType.TANK;
+
+/**
+ * {@link StrategyTarget} над {@link MyStrategy} и {@link SyntheticWorlds}. Класс открытый, потому что бенчмарк
+ * создаёт его по имени из другого пакета. Вызовы {@code initializeTick} и {@code move} применяют обновления,
+ * сдвигающие всю технику обеих сторон.
+ */
+public final class MyStrategyTarget implements StrategyTarget {
+    private static final int GROUND_TYPES = 1 << ARRV.ordinal() | 1 << TANK.ordinal() | 1 << IFV.ordinal();
+
+    private SyntheticWorlds worlds;
+    private MyStrategy strategy;
+    private Player me;
+    private Game game;
+    private Move move;
+    private final MyStrategy.Point mass = new MyStrategy.Point(0, 0);
+
+    @Override
+    public void setUp(int vehiclesPerSide) {
+        worlds = new SyntheticWorlds(vehiclesPerSide, 42);
+        me = worlds.getMe();
+        game = worlds.getGame();
+        move = new Move();
+        strategy = new MyStrategy();
+        strategy.move(me, worlds.first(), game, move);
+    }
+
+    @Override
+    public void initializeTick() {
+        strategy.initializeTick(me, worlds.next(), game, move);
+    }
+
+    @Override
+    public boolean inBattle() {
+        return strategy.inBattle();
+    }
+
+    @Override
+    public boolean enough() {
+        return strategy.enough();
+    }
+
+    @Override
+    public Object getMassOfVehicle() {
+        return strategy.getMassOfVehicle(mass, MyStrategy.Ownership.ALLY, GROUND_TYPES);
+    }
+
+    @Override
+    public Object move() {
+        strategy.move(me, worlds.next(), game, move);
+        return move;
+    }
+}
@@ -0,0 +1,97 @@
+import model.Facility;
+import model.Game;
+import model.Player;
+import model.TerrainType;
+import model.Vehicle;
+import model.VehicleType;
+import model.VehicleUpdate;
+import model.WeatherType;
+import model.World;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Синтетические миры для бенчмарков: две армии заданного размера, стоящие вплотную друг к другу, и два заранее
+ * построенных набора обновлений, попеременно сдвигающих всю технику туда и обратно.
+ */
+final class SyntheticWorlds {
+    static final long ME = 1;
+    static final long OPPONENT = 2;
+
+    private static final double WIDTH = 1024;
+    private static final double HEIGHT = 1024;
+    private static final int CELLS = 32;
+    private static final VehicleType[] TYPES = VehicleType.values();
+
+    private final Game game;
+    private final Vehicle[] vehicles;
+    private final VehicleUpdate[] forward;
+    private final VehicleUpdate[] backward;
+    private final TerrainType[][] terrain;
+    private final WeatherType[][] weather;
+    private final Player[] players;
+    private int tick;
+
+    SyntheticWorlds(int vehiclesPerSide, long seed) {
+        Random random = new Random(seed);
+        game = Simulator.newGame(seed);
+        vehicles = new Vehicle[vehiclesPerSide * 2];
+        forward = new VehicleUpdate[vehicles.length];
+        backward = new VehicleUpdate[vehicles.length];
+
+        int side = (int) Math.ceil(Math.sqrt(vehiclesPerSide));
+        for (int i = 0; i < vehicles.length; i++) {
+            boolean mine = i < vehiclesPerSide;
+            int index = mine ? i : i - vehiclesPerSide;
+            double x = 300 + (index % side) * 6 + (mine ? 0 : side * 6 - 20);
+            double y = 300 + (index / side) * 6;
+            VehicleType type = TYPES[random.nextInt(TYPES.length)];
+            vehicles[i] = Simulator.newVehicle(game, i + 1, mine ? ME : OPPONENT, type, x, y);
+
+            double dx = random.nextDouble() - 0.5;
+            double dy = random.nextDouble() - 0.5;
+            forward[i] = new VehicleUpdate(i + 1, x + dx, y + dy, vehicles[i].getDurability(), 0, false, new int[0]);
+            backward[i] = new VehicleUpdate(i + 1, x, y, vehicles[i].getDurability(), 0, false, new int[0]);
+        }
+
+        terrain = new TerrainType[CELLS][CELLS];
+        weather = new WeatherType[CELLS][CELLS];
+        for (TerrainType[] column : terrain) {
+            Arrays.fill(column, TerrainType.PLAIN);
+        }
+        for (WeatherType[] column : weather) {
+            Arrays.fill(column, WeatherType.CLEAR);
+        }
+
+        players = new Player[]{
+                new Player(ME, true, false, 0, 0, 0, -1, -1, -1, -1),
+                new Player(OPPONENT, false, false, 0, 0, 0, -1, -1, -1, -1)
+        };
+    }
+
+    Game getGame() {
+        return game;
+    }
+
+    Player getMe() {
+        return players[0];
+    }
+
+    /**
+     * @return Нулевой тик: вся техника приходит в {@link World#getNewVehicles()}.
+     */
+    World first() {
+        tick = 0;
+        return new World(tick, game.getTickCount(), WIDTH, HEIGHT, players, vehicles, new VehicleUpdate[0], terrain, weather, new Facility[0]);
+    }
+
+    /**
+     * @return Следующий тик, в котором сдвигается вся техника обеих сторон. Создаётся только объект {@link World}.
+     */
+    World next() {
+        tick++;
+        VehicleUpdate[] updates = tick % 2 == 1 ? forward : backward;
+        return new World(tick, game.getTickCount(), WIDTH, HEIGHT, players, new Vehicle[0], updates, terrain, weather, new Facility[0]);
+    }
+}
@@ -0,0 +1,84 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одного тика {@code MyStrategy} на синтетических мирах разного размера. Стратегия вызывается через
+ * {@link StrategyTarget}; каждый вызов бенчмарков {@code initializeTick} и {@code move} применяет обновления,
+ * сдвигающие всю технику обеих сторон.
+ * <p>
+ * Запуск через {@link #main(String[])} всегда подключает {@link GCProfiler}, чтобы рядом с ns/op выводился
+ * {@code gc.alloc.rate.norm}. Аргументы командной строки передаются JMH как есть.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MyStrategyBenchmark {
+    private static final String TARGET = "MyStrategyTarget";
+
+    @Param({"500", "1000", "2000"})
+    public int vehiclesPerSide;
+
+    private StrategyTarget target;
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(MyStrategyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new org.openjdk.jmh.runner.Runner(options).run();
+    }
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        target = (StrategyTarget) Class.forName(TARGET).getConstructor().newInstance();
+        target.setUp(vehiclesPerSide);
+    }
+
+    @Benchmark
+    public void initializeTick() {
+        target.initializeTick();
+    }
+
+    @Benchmark
+    public boolean inBattle() {
+        return target.inBattle();
+    }
+
+    @Benchmark
+    public boolean enough() {
+        return target.enough();
+    }
+
+    @Benchmark
+    public Object getMassOfVehicle() {
+        return target.getMassOfVehicle();
+    }
+
+    @Benchmark
+    public Object move() {
+        return target.move();
+    }
+}
@@ -0,0 +1,20 @@
+package benchmark;
+
+/**
+ * Измеряемые операции стратегии. JMH не принимает бенчмарки в пакете по умолчанию, а классы стратегии лежат
+ * именно там и из именованного пакета не видны. Поэтому бенчмарк вызывает их через этот интерфейс, а реализацию
+ * {@code MyStrategyTarget} из пакета по умолчанию загружает по имени один раз при подготовке.
+ */
+public interface StrategyTarget {
+    void setUp(int vehiclesPerSide);
+
+    void initializeTick();
+
+    boolean inBattle();
+
+    boolean enough();
+
+    Object getMassOfVehicle();
+
+    Object move();
+}
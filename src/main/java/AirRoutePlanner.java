@@ -0,0 +1,187 @@
+import model.Game;
+import model.VehicleType;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Маршруты воздушной техники с учётом погоды.
+ * <p>
+ * Для пары «тип, клетка назначения» один раз строится поле времени: алгоритм Дейкстры от клеток-источников по
+ * восьми соседям. Шаг стоит время полёта между центрами клеток со скоростью типа, умноженной на средний
+ * погодный коэффициент скорости двух клеток. Источник — сама клетка назначения. Если задана дальность обзора, то
+ * источником служит каждая клетка, из центра которой назначение видно с учётом погодного коэффициента обзора в
+ * ней. Так наводчик идёт не к цели, а к ближайшей по времени точке, откуда её видно. Погода в игре не меняется,
+ * поэтому поле не устаревает; кэш ограничен {@link #CACHE_SIZE} последними полями.
+ * <p>
+ * Дальше техника спускается по полю к источнику. Приказ ведёт в самую дальнюю клетку спуска, до которой прямая
+ * не проходит по погоде хуже, чем сам спуск на этом участке.
+ */
+final class AirRoutePlanner {
+    private static final int CACHE_SIZE = 32;
+
+    private final InfluenceMap map;
+    private final Game game;
+    private final int columns;
+    private final int rows;
+    private final int cellCount;
+    private final double cellSize;
+    private final CellHeap heap;
+    private final int[] descent;
+    private final Map<Integer, Field> fields = new LinkedHashMap<Integer, Field>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Field> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Время до ближайшего источника из каждой клетки.
+     */
+    private static final class Field {
+        final double[] times;
+        final double range;
+
+        Field(double[] times, double range) {
+            this.times = times;
+            this.range = range;
+        }
+    }
+
+    AirRoutePlanner(InfluenceMap map, Game game) {
+        this.map = map;
+        this.game = game;
+        this.columns = map.getColumnCount();
+        this.rows = map.getRowCount();
+        this.cellCount = map.getCellCount();
+        this.cellSize = Math.min(map.getCellWidth(), map.getCellHeight());
+        this.heap = new CellHeap(cellCount * 8);
+        this.descent = new int[cellCount];
+    }
+
+    /**
+     * Ближайшая точка маршрута воздушной техники типа {@code type} из {@code (x, y)} к {@code (targetX, targetY)}.
+     *
+     * @param range Дальность обзора в ясную погоду, на которой достаточно оказаться от цели, или {@code 0}, если
+     *              лететь надо в саму клетку цели.
+     * @return Клетка-ориентир или {@code -1}, если техника уже в клетке-источнике и дальше надо лететь прямо.
+     */
+    int next(VehicleType type, double x, double y, double targetX, double targetY, double range) {
+        int goal = map.getCell(targetX, targetY);
+        Field field = getField(type, goal, range);
+        int cell = map.getCell(x, y);
+        if (field.times[cell] == 0) {
+            return -1;
+        }
+
+        int length = 0;
+        descent[length++] = cell;
+        while (field.times[cell] > 0) {
+            int best = cell;
+            int column = cell % columns;
+            int row = cell / columns;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int nextColumn = column + dx;
+                    int nextRow = row + dy;
+                    if (nextColumn >= 0 && nextRow >= 0 && nextColumn < columns && nextRow < rows
+                            && field.times[nextRow * columns + nextColumn] < field.times[best]) {
+                        best = nextRow * columns + nextColumn;
+                    }
+                }
+            }
+            if (best == cell) {
+                break;
+            }
+            cell = best;
+            descent[length++] = cell;
+        }
+
+        int waypoint = 1;
+        float worst = Float.MAX_VALUE;
+        for (int i = 1; i < length; i++) {
+            worst = Math.min(worst, map.getSpeedFactor(true, descent[i]));
+            if (!isStraight(x, y, descent[i], worst)) {
+                break;
+            }
+            waypoint = i;
+        }
+        return length > 1 ? descent[Math.min(waypoint, length - 1)] : -1;
+    }
+
+    private Field getField(VehicleType type, int goal, double range) {
+        Integer key = type.ordinal() * cellCount + goal;
+        Field field = fields.get(key);
+        if (field == null || field.range != range) {
+            field = new Field(build(type, goal, range), range);
+            fields.put(key, field);
+        }
+        return field;
+    }
+
+    /**
+     * Строит поле времени от источников алгоритмом Дейкстры.
+     */
+    private double[] build(VehicleType type, int goal, double range) {
+        double speed = ForwardModel.getSpeed(game, type);
+        double[] times = new double[cellCount];
+        Arrays.fill(times, Double.MAX_VALUE);
+        boolean[] closed = new boolean[cellCount];
+        heap.clear();
+
+        double goalX = map.getCellCenterX(goal);
+        double goalY = map.getCellCenterY(goal);
+        for (int cell = 0; cell < cellCount; cell++) {
+            boolean source = cell == goal || range > 0 && Geometry.within(map.getCellCenterX(cell), map.getCellCenterY(cell),
+                    goalX, goalY, range * map.getVisionFactor(true, cell) - cellSize);
+            if (source) {
+                times[cell] = 0;
+                heap.push(cell, 0);
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            int cell = heap.pop();
+            if (closed[cell]) {
+                continue;
+            }
+            closed[cell] = true;
+            int column = cell % columns;
+            int row = cell / columns;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int nextColumn = column + dx;
+                    int nextRow = row + dy;
+                    if ((dx | dy) == 0 || nextColumn < 0 || nextRow < 0 || nextColumn >= columns || nextRow >= rows) {
+                        continue;
+                    }
+                    int next = nextRow * columns + nextColumn;
+                    double factor = (map.getSpeedFactor(true, cell) + map.getSpeedFactor(true, next)) / 2;
+                    double time = times[cell] + Math.hypot(dx, dy) * cellSize / (speed * factor);
+                    if (!closed[next] && time < times[next]) {
+                        times[next] = time;
+                        heap.push(next, time);
+                    }
+                }
+            }
+        }
+        return times;
+    }
+
+    /**
+     * @return Возвращает {@code true}, если прямая от {@code (x, y)} до центра клетки не проходит по клеткам с
+     * погодой хуже {@code worst}. Прямая проверяется шагами в полклетки.
+     */
+    private boolean isStraight(double x, double y, int cell, float worst) {
+        double toX = map.getCellCenterX(cell);
+        double toY = map.getCellCenterY(cell);
+        int steps = (int) Math.ceil(Math.hypot(toX - x, toY - y) / (cellSize / 2));
+        for (int i = 1; i <= steps; i++) {
+            if (map.getSpeedFactor(true, map.getCell(x + (toX - x) * i / steps, y + (toY - y) * i / steps)) < worst) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Фоновый поток для дорогого анализа: выбора точки ядерного удара и ближайшего скопления противника.
+ * <p>
+ * Основной поток каждый тик кладёт неизменяемый {@link Snapshot} в почтовый ящик: непрочитанный снимок просто
+ * заменяется новым. Поток разбирает последний снимок и публикует {@link Result} через {@link AtomicReference}, в
+ * которую пишет только он; основной поток лишь читает последнюю публикацию и никогда не ждёт.
+ * <p>
+ * Если снимков нет дольше {@link #IDLE_TIMEOUT_NANOS}, поток завершается, чтобы не переживать игру; следующий
+ * {@link #submit} запускает новый.
+ */
+final class AnalysisWorker {
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final StrikePlanner planner;
+    private final int minClusterSize;
+    private final AtomicReference<Snapshot> pending = new AtomicReference<>();
+    private final AtomicReference<Result> latest = new AtomicReference<>();
+    private volatile Thread thread;
+
+    /**
+     * Входные данные анализа. После передачи в {@link #submit} не меняются.
+     */
+    static final class Snapshot {
+        final int tick;
+        final StrikePlanner.Area area;
+        final double armyX;
+        final double armyY;
+        final double[] clusterXs;
+        final double[] clusterYs;
+        final int[] clusterSizes;
+
+        /**
+         * @param area Копия области вокруг наводчика или {@code null}, если наводчика нет.
+         */
+        Snapshot(int tick, StrikePlanner.Area area, double armyX, double armyY,
+                 double[] clusterXs, double[] clusterYs, int[] clusterSizes) {
+            this.tick = tick;
+            this.area = area;
+            this.armyX = armyX;
+            this.armyY = armyY;
+            this.clusterXs = clusterXs;
+            this.clusterYs = clusterYs;
+            this.clusterSizes = clusterSizes;
+        }
+    }
+
+    static final class Result {
+        /**
+         * Тик снимка, по которому посчитан результат.
+         */
+        final int tick;
+        /**
+         * Лучшая точка удара или {@code null}.
+         */
+        final StrikePlanner.Strike strike;
+        final boolean enemyFound;
+        final double enemyX;
+        final double enemyY;
+
+        Result(int tick, StrikePlanner.Strike strike, boolean enemyFound, double enemyX, double enemyY) {
+            this.tick = tick;
+            this.strike = strike;
+            this.enemyFound = enemyFound;
+            this.enemyX = enemyX;
+            this.enemyY = enemyY;
+        }
+    }
+
+    /**
+     * @param planner Используется только его потокобезопасный {@link StrikePlanner#evaluate}.
+     */
+    AnalysisWorker(StrikePlanner planner, int minClusterSize) {
+        this.planner = planner;
+        this.minClusterSize = minClusterSize;
+    }
+
+    void submit(Snapshot snapshot) {
+        pending.set(snapshot);
+        Thread current = thread;
+        if (current == null || !current.isAlive()) {
+            current = new Thread(this::run, "analysis");
+            current.setDaemon(true);
+            thread = current;
+            current.start();
+        } else {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * @return Последний опубликованный результат или {@code null}.
+     */
+    Result getLatest() {
+        return latest.get();
+    }
+
+    private void run() {
+        long idleSince = System.nanoTime();
+        while (true) {
+            Snapshot snapshot = pending.getAndSet(null);
+            if (snapshot == null) {
+                if (System.nanoTime() - idleSince > IDLE_TIMEOUT_NANOS) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_TIMEOUT_NANOS);
+                continue;
+            }
+            latest.set(analyze(snapshot));
+            idleSince = System.nanoTime();
+        }
+    }
+
+    private Result analyze(Snapshot snapshot) {
+        StrikePlanner.Strike strike = snapshot.area == null ? null : planner.evaluate(snapshot.area);
+
+        int nearest = -1;
+        double nearestDistance = Double.MAX_VALUE;
+        for (int cluster = 0; cluster < snapshot.clusterSizes.length; cluster++) {
+            if (snapshot.clusterSizes[cluster] < minClusterSize) {
+                continue;
+            }
+            double dx = snapshot.clusterXs[cluster] - snapshot.armyX;
+            double dy = snapshot.clusterYs[cluster] - snapshot.armyY;
+            double distance = dx * dx + dy * dy;
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = cluster;
+            }
+        }
+        return nearest < 0
+                ? new Result(snapshot.tick, strike, false, 0, 0)
+                : new Result(snapshot.tick, strike, true, snapshot.clusterXs[nearest], snapshot.clusterYs[nearest]);
+    }
+}
@@ -0,0 +1,144 @@
+import model.Game;
+import model.Move;
+import model.Player;
+import model.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Пакетный прогон игр на {@link Simulator} параллельно на всех ядрах. Каждая игра получает собственные экземпляры
+ * стратегий и собственный seed; испытуемая стратегия попеременно играет за первого и второго игрока, чтобы убрать
+ * влияние стартовой позиции.
+ * <p>
+ * Аргументы: число игр (по умолчанию 100), число потоков (по умолчанию по числу ядер), начальный seed (по умолчанию 1).
+ */
+final class BatchRunner {
+    private final Supplier<Strategy> candidate;
+    private final Supplier<Strategy> opponent;
+
+    BatchRunner(Supplier<Strategy> candidate, Supplier<Strategy> opponent) {
+        this.candidate = candidate;
+        this.opponent = opponent;
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        long start = System.nanoTime();
+        Summary summary = new BatchRunner(MyStrategy::new, MyStrategy::new).run(games, threads, seed);
+        System.out.println(summary);
+        System.out.println("Elapsed: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Играет {@code games} игр с seed от {@code seed} до {@code seed + games - 1}.
+     */
+    Summary run(int games, int threads, long seed) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<GameStats>> tasks = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                long gameSeed = seed + i;
+                boolean first = i % 2 == 0;
+                tasks.add(pool.submit(() -> play(gameSeed, first)));
+            }
+
+            Summary summary = new Summary();
+            for (ForkJoinTask<GameStats> task : tasks) {
+                summary.add(task.join());
+            }
+            return summary;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private GameStats play(long seed, boolean first) {
+        LatencyHistogram latency = new LatencyHistogram();
+        Strategy measured = new TimedStrategy(candidate.get(), latency);
+        Strategy other = opponent.get();
+        Simulator simulator = first
+                ? new Simulator(Simulator.newGame(seed), measured, other)
+                : new Simulator(Simulator.newGame(seed), other, measured);
+
+        Simulator.Result result = simulator.play();
+        int side = first ? 0 : 1;
+        return new GameStats(result.winner == side, result.winner == -1, result.ticks, latency);
+    }
+
+    /**
+     * Обёртка, замеряющая длительность каждого вызова {@link Strategy#move}.
+     */
+    private static final class TimedStrategy implements Strategy {
+        private final Strategy strategy;
+        private final LatencyHistogram latency;
+
+        TimedStrategy(Strategy strategy, LatencyHistogram latency) {
+            this.strategy = strategy;
+            this.latency = latency;
+        }
+
+        @Override
+        public void move(Player me, World world, Game game, Move move) {
+            long start = System.nanoTime();
+            strategy.move(me, world, game, move);
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    private static final class GameStats {
+        final boolean won;
+        final boolean draw;
+        final int ticks;
+        final LatencyHistogram latency;
+
+        GameStats(boolean won, boolean draw, int ticks, LatencyHistogram latency) {
+            this.won = won;
+            this.draw = draw;
+            this.ticks = ticks;
+            this.latency = latency;
+        }
+    }
+
+    static final class Summary {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram ticksToWin = new LatencyHistogram();
+        private int games;
+        private int wins;
+        private int draws;
+
+        private void add(GameStats stats) {
+            games++;
+            if (stats.won) {
+                wins++;
+                ticksToWin.record(stats.ticks);
+            } else if (stats.draw) {
+                draws++;
+            }
+            latency.add(stats.latency);
+        }
+
+        double getWinRate() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Games: %d, wins: %d, draws: %d, losses: %d, win rate: %.1f%%%n" +
+                            "Ticks to win: mean %.0f, p50 %d, p90 %d%n" +
+                            "Tick latency, us: mean %.1f, p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+                    games, wins, draws, games - wins - draws, getWinRate() * 100,
+                    ticksToWin.getMean(), ticksToWin.getPercentile(50), ticksToWin.getPercentile(90),
+                    latency.getMean() / 1000, latency.getPercentile(50) / 1000.0, latency.getPercentile(90) / 1000.0,
+                    latency.getPercentile(99) / 1000.0, latency.getPercentile(99.9) / 1000.0, latency.getMax() / 1000.0
+            );
+        }
+    }
+}
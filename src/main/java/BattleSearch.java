@@ -0,0 +1,169 @@
+/**
+ * Лучевой поиск последовательности действий в бою поверх {@link ForwardModel}.
+ * <p>
+ * Поиск идёт с постепенным углублением: сначала оцениваются все одиночные действия, затем к {@link #BEAM_WIDTH}
+ * лучшим последовательностям текущей глубины приписывается каждое действие, и так до {@link #MAX_DEPTH}. Работа
+ * делится на кванты по времени ({@link #think}), так что поиск можно продолжать в тиках, когда действовать всё
+ * равно нельзя, и прервать в любой момент: {@link #getBest()} возвращает первое действие лучшей последовательности
+ * последней законченной глубины.
+ * <p>
+ * Квант по времени делает выбор зависимым от нагрузки машины. Для сверки журналов и бенчмарков квант можно задать
+ * числом оценённых последовательностей, тогда поиск детерминирован.
+ */
+final class BattleSearch {
+    static final int MAX_DEPTH = 3;
+    static final int BEAM_WIDTH = 3;
+
+    private final ForwardModel model;
+    private final int ticksPerAction;
+    private final int evaluationsPerSlice;
+
+    private Command[] actions = new Command[0];
+    private int startTick = -1;
+
+    private int[][] beam = new int[BEAM_WIDTH][MAX_DEPTH];
+    private int beamSize;
+    private int[][] level = new int[0][MAX_DEPTH];
+    private double[] levelScores = new double[0];
+    private int levelSize;
+    private int cursor;
+    private int depth;
+    private int best = -1;
+    private final int[] sequence = new int[MAX_DEPTH];
+    /**
+     * Номера лучших узлов законченной глубины по убыванию оценки.
+     */
+    private final int[] top = new int[BEAM_WIDTH];
+
+    /**
+     * @param ticksPerAction      Сколько тиков моделируется каждое действие последовательности.
+     * @param evaluationsPerSlice Сколько последовательностей оценивать за квант вместо бюджета времени, или
+     *                            {@code 0}, чтобы квант ограничивало время.
+     */
+    BattleSearch(ForwardModel model, int ticksPerAction, int evaluationsPerSlice) {
+        this.model = model;
+        this.ticksPerAction = ticksPerAction;
+        this.evaluationsPerSlice = evaluationsPerSlice;
+    }
+
+    /**
+     * Начинает новый поиск. Положения нашей техники должны быть уже сняты в {@link ForwardModel#capture}.
+     *
+     * @param actions Возможные действия; первое считается действием по умолчанию.
+     */
+    void begin(int tick, Command... actions) {
+        this.actions = actions;
+        this.startTick = tick;
+        int maxLevel = Math.max(actions.length, BEAM_WIDTH * actions.length);
+        if (level.length < maxLevel) {
+            level = new int[maxLevel][MAX_DEPTH];
+            levelScores = new double[maxLevel];
+        }
+        best = 0;
+        beamSize = 0;
+        depth = 0;
+        expand();
+    }
+
+    boolean isRunning() {
+        return startTick >= 0;
+    }
+
+    boolean isFinished() {
+        return depth >= MAX_DEPTH;
+    }
+
+    /**
+     * @return Сколько тиков прошло с начала поиска.
+     */
+    int getAge(int tick) {
+        return tick - startTick;
+    }
+
+    /**
+     * Продолжает поиск, пока не истечёт {@code budgetNanos} или не закончится дерево. Время проверяется после каждой
+     * оценённой последовательности, а если модель считает параллельно — после остатка текущей глубины целиком. Если
+     * задано число оценок за квант, время не проверяется.
+     */
+    void think(long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        int evaluated = 0;
+        while (isRunning() && !isFinished()
+                && (evaluationsPerSlice > 0 ? evaluated < evaluationsPerSlice : System.nanoTime() < deadline)) {
+            int to = model.isParallel() ? levelSize : cursor + 1;
+            if (evaluationsPerSlice > 0) {
+                to = Math.min(to, cursor + evaluationsPerSlice - evaluated);
+            }
+            model.evaluate(actions, level, cursor, to, depth + 1, ticksPerAction, levelScores);
+            evaluated += to - cursor;
+            cursor = to;
+            if (cursor == levelSize) {
+                finishLevel();
+            }
+        }
+    }
+
+    /**
+     * @return Первое действие лучшей найденной последовательности или {@code null}, если поиск не начат.
+     */
+    Command getBest() {
+        return isRunning() ? actions[best] : null;
+    }
+
+    /**
+     * Заканчивает поиск: следующий начнётся с новых положений техники.
+     */
+    void reset() {
+        startTick = -1;
+    }
+
+    /**
+     * Переносит лучшие последовательности законченной глубины в луч и переходит к следующей. Лучшие отбираются
+     * вставкой в {@link #top}; при равных оценках раньше идёт узел с меньшим номером.
+     */
+    private void finishLevel() {
+        beamSize = 0;
+        for (int i = 0; i < levelSize; i++) {
+            int position = beamSize < BEAM_WIDTH ? beamSize++ : BEAM_WIDTH;
+            while (position > 0 && levelScores[i] > levelScores[top[position - 1]]) {
+                if (position < BEAM_WIDTH) {
+                    top[position] = top[position - 1];
+                }
+                position--;
+            }
+            if (position < BEAM_WIDTH) {
+                top[position] = i;
+            }
+        }
+
+        for (int i = 0; i < beamSize; i++) {
+            System.arraycopy(level[top[i]], 0, beam[i], 0, MAX_DEPTH);
+        }
+        best = beam[0][0];
+        depth++;
+        if (!isFinished()) {
+            expand();
+        }
+    }
+
+    /**
+     * Строит узлы текущей глубины: одиночные действия или продолжения последовательностей из луча.
+     */
+    private void expand() {
+        levelSize = 0;
+        cursor = 0;
+        if (depth == 0) {
+            for (int action = 0; action < actions.length; action++) {
+                level[levelSize++][0] = action;
+            }
+            return;
+        }
+        for (int i = 0; i < beamSize; i++) {
+            System.arraycopy(beam[i], 0, sequence, 0, depth);
+            for (int action = 0; action < actions.length; action++) {
+                System.arraycopy(sequence, 0, level[levelSize], 0, depth);
+                level[levelSize++][depth] = action;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Двоичная куча клеток по ключу для поисков по сетке. Клетка может лежать в куче несколько раз: устаревшие записи
+ * отбрасывает вызывающий код по своему признаку закрытой клетки.
+ */
+final class CellHeap {
+    private final int[] cells;
+    private final double[] keys;
+    private int size;
+
+    /**
+     * @param capacity Наибольшее число записей; для поиска по восьми соседям хватает восьми на клетку.
+     */
+    CellHeap(int capacity) {
+        cells = new int[capacity];
+        keys = new double[capacity];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void push(int cell, double key) {
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (keys[parent] <= key) {
+                break;
+            }
+            cells[i] = cells[parent];
+            keys[i] = keys[parent];
+            i = parent;
+        }
+        cells[i] = cell;
+        keys[i] = key;
+    }
+
+    /**
+     * @return Клетка с наименьшим ключом, которая убирается из кучи.
+     */
+    int pop() {
+        int top = cells[0];
+        int last = cells[--size];
+        double key = keys[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[child] >= key) {
+                break;
+            }
+            cells[i] = cells[child];
+            keys[i] = keys[child];
+            i = child;
+        }
+        cells[i] = last;
+        keys[i] = key;
+        return top;
+    }
+}
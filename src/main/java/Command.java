@@ -0,0 +1,188 @@
+import model.ActionType;
+import model.Move;
+import model.VehicleType;
+
+/**
+ * Отложенное действие: значения полей {@link Move}, вычисленные в момент постановки в очередь. Единственное
+ * исключение — выделение одной техники, рамка которого берётся из {@link VehicleStore} в момент выполнения.
+ * <p>
+ * Объекты неизменяемы, {@link CommandQueue} при слиянии действий создаёт новые.
+ */
+final class Command {
+    final ActionType action;
+    final int group;
+    final double left;
+    final double top;
+    final double right;
+    final double bottom;
+    final double x;
+    final double y;
+    final double angle;
+    final double factor;
+    final double maxSpeed;
+    final VehicleType vehicleType;
+    final long vehicleId;
+    /**
+     * Техника, вокруг текущего положения которой строится рамка выделения, или {@code -1}.
+     */
+    final int vehicle;
+    /**
+     * Рамка покрывает всю карту, и состав выделения зависит только от типа и группы.
+     */
+    final boolean wholeMap;
+    /**
+     * После выполнения следующее действие ждёт, пока армия не остановится.
+     */
+    final boolean settle;
+
+    private Command(ActionType action, int group, double left, double top, double right, double bottom,
+                    double x, double y, double angle, double factor, double maxSpeed,
+                    VehicleType vehicleType, long vehicleId, int vehicle, boolean wholeMap, boolean settle) {
+        this.action = action;
+        this.group = group;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.x = x;
+        this.y = y;
+        this.angle = angle;
+        this.factor = factor;
+        this.maxSpeed = maxSpeed;
+        this.vehicleType = vehicleType;
+        this.vehicleId = vehicleId;
+        this.vehicle = vehicle;
+        this.wholeMap = wholeMap;
+        this.settle = settle;
+    }
+
+    static Command select(double left, double top, double right, double bottom) {
+        return new Command(ActionType.CLEAR_AND_SELECT, 0, left, top, right, bottom, 0, 0, 0, 0, 0, null, -1, -1, false, false);
+    }
+
+    /**
+     * Снятие выделения со всей техники группы.
+     */
+    static Command deselect(int group) {
+        return new Command(ActionType.DESELECT, group, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, -1, -1, false, false);
+    }
+
+    /**
+     * Выделение по всей карте техники заданного типа ({@code null} — любого) или, если задана группа, всей группы:
+     * в игре выделение с группой не смотрит на рамку и тип.
+     */
+    static Command selectAll(double width, double height, VehicleType vehicleType, int group) {
+        return new Command(ActionType.CLEAR_AND_SELECT, group, 0, 0, width, height, 0, 0, 0, 0, 0, vehicleType, -1, -1, true, false);
+    }
+
+    static Command selectVehicle(int vehicle) {
+        return new Command(ActionType.CLEAR_AND_SELECT, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, -1, vehicle, false, false);
+    }
+
+    static Command assign(int group) {
+        return new Command(ActionType.ASSIGN, group, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, -1, -1, false, false);
+    }
+
+    static Command dismiss(int group) {
+        return new Command(ActionType.DISMISS, group, 0, 0, 0, 0, 0, 0, 0, 0, 0, null, -1, -1, false, false);
+    }
+
+    /**
+     * @param maxSpeed Ограничение скорости, {@code 0} — без ограничения.
+     */
+    static Command move(double x, double y, double maxSpeed) {
+        return new Command(ActionType.MOVE, 0, 0, 0, 0, 0, x, y, 0, 0, maxSpeed, null, -1, -1, false, false);
+    }
+
+    static Command scale(double x, double y, double factor, double maxSpeed) {
+        return new Command(ActionType.SCALE, 0, 0, 0, 0, 0, x, y, 0, factor, maxSpeed, null, -1, -1, false, false);
+    }
+
+    static Command rotate(double x, double y, double angle) {
+        return new Command(ActionType.ROTATE, 0, 0, 0, 0, 0, x, y, angle, 0, 0, null, -1, -1, false, false);
+    }
+
+    static Command strike(double x, double y, long vehicleId) {
+        return new Command(ActionType.TACTICAL_NUCLEAR_STRIKE, 0, 0, 0, 0, 0, x, y, 0, 0, 0, null, vehicleId, -1, false, false);
+    }
+
+    /**
+     * @return То же действие, после которого нужно дождаться остановки армии.
+     */
+    Command settling() {
+        return new Command(action, group, left, top, right, bottom, x, y, angle, factor, maxSpeed, vehicleType, vehicleId, vehicle, wholeMap, true);
+    }
+
+    /**
+     * @return Та же рамка, добавляемая к текущему выделению.
+     */
+    Command adding() {
+        return new Command(ActionType.ADD_TO_SELECTION, group, left, top, right, bottom, x, y, angle, factor, maxSpeed, vehicleType, vehicleId, vehicle, false, settle);
+    }
+
+    /**
+     * @return Перемещение на сумму векторов с более строгим из ограничений скорости.
+     */
+    Command then(Command move) {
+        double speed = maxSpeed == 0 ? move.maxSpeed : move.maxSpeed == 0 ? maxSpeed : Math.min(maxSpeed, move.maxSpeed);
+        return move(x + move.x, y + move.y, speed);
+    }
+
+    boolean isSelection() {
+        return action == ActionType.CLEAR_AND_SELECT || action == ActionType.ADD_TO_SELECTION || action == ActionType.DESELECT;
+    }
+
+    /**
+     * Выделение с заранее известной рамкой: такие выделения можно объединять через {@link ActionType#ADD_TO_SELECTION}.
+     */
+    boolean isStaticSelection() {
+        return action != ActionType.DESELECT && isSelection() && vehicle < 0;
+    }
+
+    boolean isNoOpMove() {
+        return action == ActionType.MOVE && x == 0 && y == 0;
+    }
+
+    boolean sameMove(Command other) {
+        return action == ActionType.MOVE && other.action == ActionType.MOVE
+                && x == other.x && y == other.y && maxSpeed == other.maxSpeed && settle == other.settle;
+    }
+
+    boolean sameSelection(Command other) {
+        return action == other.action && group == other.group && vehicleType == other.vehicleType
+                && vehicle < 0 && other.vehicle < 0
+                && left == other.left && top == other.top && right == other.right && bottom == other.bottom;
+    }
+
+    void apply(Move move, VehicleStore vehicles) {
+        move.setAction(action);
+        move.setGroup(group);
+        if (vehicle >= 0) {
+            move.setLeft(vehicles.getX(vehicle));
+            move.setRight(vehicles.getX(vehicle));
+            move.setTop(vehicles.getY(vehicle));
+            move.setBottom(vehicles.getY(vehicle));
+        } else {
+            move.setLeft(left);
+            move.setTop(top);
+            move.setRight(right);
+            move.setBottom(bottom);
+        }
+        move.setX(x);
+        move.setY(y);
+        move.setAngle(angle);
+        move.setFactor(factor);
+        move.setMaxSpeed(maxSpeed);
+        move.setVehicleType(vehicleType);
+        if (vehicleId >= 0) {
+            move.setVehicleId(vehicleId);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Command{" + action + (vehicleType != null ? " " + vehicleType : "") + (group != 0 ? " group=" + group : "")
+                + " [" + left + ", " + top + ", " + right + ", " + bottom + "] (" + x + ", " + y + ")"
+                + (settle ? " settle" : "") + '}';
+    }
+}
@@ -0,0 +1,304 @@
+import model.ActionType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Очередь отложенных действий с двумя приоритетами и учётом лимита действий.
+ * <p>
+ * Обычные действия идут по порядку постановки и делятся на блоки: блок начинается с
+ * {@link ActionType#CLEAR_AND_SELECT} и продолжается до следующего такого выделения. Блок начинается, только если
+ * в текущем окне хватает действий на него целиком, не трогая {@link #RESERVED_FOR_URGENT} действий, оставленных
+ * срочным блокам.
+ * <p>
+ * Срочные блоки (уклонение от ядерного удара, собственный удар) ставятся целиком через {@link #addUrgent},
+ * упорядочиваются по крайнему тику и выбрасываются, если не успели начаться к нему. Срочный блок прерывает обычный
+ * на любом действии, в том числе во время ожидания остановки армии; прерванный блок потом продолжается, заново
+ * повторив выделение, на котором он стоял, и, если он ждал остановки армии, снова её ждёт.
+ * <p>
+ * Обычные действия по дороге сокращаются:
+ * <ul>
+ * <li>выделение, за которым сразу следует другое выделение, выбрасывается;</li>
+ * <li>перемещение на нулевой вектор выбрасывается вместе с выделением перед ним;</li>
+ * <li>два перемещения подряд сливаются в одно на сумму векторов: в игре второй приказ всё равно отменяет первый;</li>
+ * <li>идущие подряд пары «выделение + перемещение» с одинаковым перемещением склеиваются в одно перемещение
+ * нескольких выделений, добавленных к выделению через {@link ActionType#ADD_TO_SELECTION}.</li>
+ * </ul>
+ * При выдаче выбрасывается выделение, совпадающее с уже действующим: если его состав не мог измениться или если
+ * так говорит проверка, заданная через {@link #setSelectionCheck}.
+ */
+final class CommandQueue {
+    static final int RESERVED_FOR_URGENT = 1;
+
+    private final ArrayDeque<Command> commands = new ArrayDeque<>();
+    private final List<Urgent> urgent = new ArrayList<>();
+    private Urgent running;
+    private boolean inBlock;
+
+    /**
+     * Выделения, выполненные с последнего {@link ActionType#CLEAR_AND_SELECT}: по ним восстанавливается выделение
+     * прерванного блока.
+     */
+    private final List<Command> selectionSteps = new ArrayList<>();
+    private Command selection;
+    private boolean settling;
+    /**
+     * Прерванный срочным блоком обычный блок ждал остановки армии.
+     */
+    private boolean interruptedSettling;
+    private Predicate<Command> selectionCheck = (command) -> false;
+
+    private final int[] actionTicks = new int[64];
+    private int actionCount;
+    private int actionLimit = Integer.MAX_VALUE;
+    private int actionInterval;
+
+    private static final class Urgent {
+        final int deadline;
+        final ArrayDeque<Command> commands = new ArrayDeque<>();
+
+        Urgent(int deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * @param limit    Число действий, разрешённых за окно.
+     * @param interval Длина окна в тиках.
+     */
+    void setActionLimit(int limit, int interval) {
+        actionLimit = Math.min(limit, actionTicks.length);
+        actionInterval = interval;
+    }
+
+    /**
+     * @param check Говорит, выделяет ли {@link ActionType#CLEAR_AND_SELECT} ровно то, что уже выделено.
+     */
+    void setSelectionCheck(Predicate<Command> check) {
+        selectionCheck = check;
+    }
+
+    void add(Command command) {
+        if (command.action == ActionType.CLEAR_AND_SELECT) {
+            dropTrailingSelection();
+        } else if (command.action == ActionType.MOVE) {
+            Command last = commands.peekLast();
+            if (command.isNoOpMove()) {
+                if (last != null && last.isSelection()) {
+                    dropTrailingSelection();
+                    return;
+                }
+            } else if (last != null && last.action == ActionType.MOVE && !last.settle && !command.settle) {
+                commands.pollLast();
+                add(last.then(command));
+                return;
+            } else if (last != null && last.isStaticSelection() && last.action == ActionType.CLEAR_AND_SELECT) {
+                commands.pollLast();
+                Command previous = commands.peekLast();
+                if (previous != null && previous.sameMove(command)) {
+                    commands.pollLast();
+                    Command before = commands.peekLast();
+                    if (before != null && before.isStaticSelection()) {
+                        commands.add(last.adding());
+                        commands.add(command);
+                        return;
+                    }
+                    commands.add(previous);
+                }
+                commands.add(last);
+            }
+        }
+        commands.add(command);
+    }
+
+    /**
+     * Ставит срочный блок, который выполняется целиком и раньше обычных.
+     *
+     * @param deadline Последний тик, в который блок ещё имеет смысл начинать.
+     */
+    void addUrgent(int deadline, Command... block) {
+        Urgent unit = new Urgent(deadline);
+        for (Command command : block) {
+            unit.commands.add(command);
+        }
+        int index = urgent.size();
+        while (index > 0 && urgent.get(index - 1).deadline > deadline) {
+            index--;
+        }
+        urgent.add(index, unit);
+    }
+
+    /**
+     * @param tick    Текущий тик.
+     * @param settled Стоит ли армия на месте.
+     * @return Следующее действие или {@code null}, если очередь пуста, нужно дождаться остановки армии или в окне не
+     * хватает действий на следующий блок.
+     */
+    Command poll(int tick, boolean settled) {
+        if (settling && settled) {
+            settling = false;
+        }
+
+        if (running == null) {
+            startUrgent(tick);
+        }
+
+        Command command;
+        boolean finished = false;
+        if (running != null) {
+            if (settling) {
+                return null;
+            }
+            command = next(running.commands);
+            if (running.commands.isEmpty()) {
+                running = null;
+                finished = true;
+            }
+        } else {
+            if (settling) {
+                return null;
+            }
+            if (commands.isEmpty() || commands.peek().action == ActionType.CLEAR_AND_SELECT) {
+                inBlock = false;
+            }
+            if (!inBlock && !commands.isEmpty() && getAvailableActions(tick) - RESERVED_FOR_URGENT
+                    < Math.min(getBlockSize(), actionLimit - RESERVED_FOR_URGENT)) {
+                return null;
+            }
+            command = next(commands);
+            inBlock = command != null;
+        }
+
+        if (command != null) {
+            actionTicks[actionCount++ % actionTicks.length] = tick;
+            settling = command.settle;
+        }
+        if (finished) {
+            settling |= interruptedSettling;
+            interruptedSettling = false;
+        }
+        return command;
+    }
+
+    /**
+     * @return Возвращает {@code true}, если последнее выданное действие требует дождаться остановки армии.
+     */
+    boolean isSettling() {
+        return settling;
+    }
+
+    boolean hasUrgent() {
+        return running != null || !urgent.isEmpty();
+    }
+
+    /**
+     * Забываем действующее выделение: например, появилась новая техника, которая в него не попала.
+     */
+    void invalidateSelection() {
+        selection = null;
+    }
+
+    boolean isEmpty() {
+        return commands.isEmpty() && !hasUrgent();
+    }
+
+    int size() {
+        int size = commands.size() + (running == null ? 0 : running.commands.size());
+        for (Urgent unit : urgent) {
+            size += unit.commands.size();
+        }
+        return size;
+    }
+
+    /**
+     * Начинает ближайший по крайнему тику срочный блок, выбросив опоздавшие. Если обычный блок прерывается посередине,
+     * перед его оставшимися действиями возвращаются выделения, на которых он стоял, а его ожидание остановки
+     * откладывается до конца срочного блока.
+     */
+    private void startUrgent(int tick) {
+        while (!urgent.isEmpty() && urgent.get(0).deadline < tick) {
+            urgent.remove(0);
+        }
+        if (urgent.isEmpty()) {
+            return;
+        }
+        running = urgent.remove(0);
+        if (inBlock && !commands.isEmpty() && commands.peek().action != ActionType.CLEAR_AND_SELECT) {
+            for (int i = selectionSteps.size() - 1; i >= 0; i--) {
+                commands.addFirst(selectionSteps.get(i));
+            }
+        }
+        inBlock = false;
+        interruptedSettling = settling;
+        settling = false;
+    }
+
+    private Command next(ArrayDeque<Command> lane) {
+        Command command = lane.poll();
+        while (command != null && command.action == ActionType.CLEAR_AND_SELECT
+                && (selection != null && command.sameSelection(selection) || selectionCheck.test(command))) {
+            selection = command.wholeMap ? command : null;
+            selectionSteps.clear();
+            selectionSteps.add(command);
+            command = lane.poll();
+        }
+        if (command == null) {
+            return null;
+        }
+
+        switch (command.action) {
+            case CLEAR_AND_SELECT:
+                selection = command.wholeMap ? command : null;
+                selectionSteps.clear();
+                selectionSteps.add(command);
+                break;
+            case ADD_TO_SELECTION:
+            case DESELECT:
+                selection = null;
+                selectionSteps.add(command);
+                break;
+            case ASSIGN:
+            case DISMISS:
+            case DISBAND:
+                if (selection != null && selection.group != 0) {
+                    selection = null;
+                }
+                break;
+            default:
+                break;
+        }
+        return command;
+    }
+
+    private int getAvailableActions(int tick) {
+        int used = 0;
+        for (int i = Math.max(0, actionCount - actionLimit); i < actionCount; i++) {
+            if (actionTicks[i % actionTicks.length] > tick - actionInterval) {
+                used++;
+            }
+        }
+        return actionLimit - used;
+    }
+
+    /**
+     * @return Число действий от начала очереди до следующего {@link ActionType#CLEAR_AND_SELECT}.
+     */
+    private int getBlockSize() {
+        int size = 0;
+        for (Command command : commands) {
+            if (size > 0 && command.action == ActionType.CLEAR_AND_SELECT) {
+                break;
+            }
+            size++;
+        }
+        return size;
+    }
+
+    private void dropTrailingSelection() {
+        while (!commands.isEmpty() && commands.peekLast().isSelection()) {
+            commands.pollLast();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+import model.VehicleType;
+
+import java.util.Arrays;
+
+/**
+ * Скопления техники противника: компоненты связности непустых клеток {@link InfluenceMap}, соседних по стороне или
+ * углу.
+ * <p>
+ * Пересчитываются только затронутые компоненты: те, в которых или рядом с которыми с прошлого вызова менялся состав
+ * клеток. Их клетки размечаются заново, остальные скопления остаются как были, а освободившиеся номера занимают
+ * последние скопления, так что номера скоплений идут подряд. Обновление самой карты пропорционально числу
+ * переместившейся техники. Когда движется вся армия противника, затронута её компонента целиком.
+ * <p>
+ * Номер скопления ({@link #getId}) сохраняется между пересчётами: новая компонента получает номер того затронутого
+ * скопления, с которым у неё больше всего общей техники, а если его уже забрала другая компонента — новый.
+ */
+final class EnemyClusters {
+    private static final int NONE = -1;
+    private static final int TYPES = VehicleType.values().length;
+
+    private final InfluenceMap map;
+    private final int columns;
+    private final int rows;
+    private int nextId;
+
+    private final int[] clusterByCell;
+    /**
+     * Клетки скопления связаны в список: первая в {@code head}, следующая в {@code nextMember}.
+     */
+    private final int[] nextMember;
+    private final int[] stack;
+    /**
+     * Клетки затронутых скоплений и изменившиеся клетки, с которых размечаются новые компоненты.
+     */
+    private final int[] seeds;
+    /**
+     * Затронутое скопление, которому клетка принадлежала до пересчёта; действительно, если {@code previousStamps}
+     * клетки равен {@code stamp}.
+     */
+    private final int[] previousClusterByCell;
+    private final int[] previousStamps;
+    private int stamp;
+    private int count;
+
+    private int[] head = new int[16];
+    private int[] ids = new int[16];
+    private int[] sizes = new int[16];
+    private double[] sumX = new double[16];
+    private double[] sumY = new double[16];
+    private double[] centerX = new double[16];
+    private double[] centerY = new double[16];
+    private int[] left = new int[16];
+    private int[] top = new int[16];
+    private int[] right = new int[16];
+    private int[] bottom = new int[16];
+    private int[][] composition = new int[TYPES][16];
+    private boolean[] dirty = new boolean[16];
+
+    private int[] previousIds = new int[16];
+    private int[] order = new int[16];
+    private int[] overlap = new int[16];
+    private boolean[] claimed = new boolean[16];
+
+    EnemyClusters(InfluenceMap map) {
+        this.map = map;
+        this.columns = map.getColumnCount();
+        this.rows = map.getRowCount();
+        this.clusterByCell = new int[map.getCellCount()];
+        this.nextMember = new int[map.getCellCount()];
+        this.stack = new int[map.getCellCount()];
+        this.seeds = new int[map.getCellCount() * 2];
+        this.previousClusterByCell = new int[map.getCellCount()];
+        this.previousStamps = new int[map.getCellCount()];
+        Arrays.fill(clusterByCell, NONE);
+    }
+
+    /**
+     * Пересчитывает скопления, затронутые изменениями клеток карты с прошлого вызова.
+     */
+    void update() {
+        int changedCount = map.getChangedCount();
+        if (changedCount == 0) {
+            return;
+        }
+        stamp++;
+
+        for (int i = 0; i < changedCount; i++) {
+            int cell = map.getChangedCell(i);
+            markDirty(clusterByCell[cell]);
+            if (map.getEnemyCount(cell) > 0) {
+                int column = cell % columns;
+                int row = cell / columns;
+                for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                    for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                        markDirty(clusterByCell[r * columns + c]);
+                    }
+                }
+            }
+        }
+
+        int seedCount = 0;
+        for (int i = 0; i < changedCount; i++) {
+            seeds[seedCount++] = map.getChangedCell(i);
+        }
+        int previousCount = 0;
+        for (int cluster = count - 1; cluster >= 0; cluster--) {
+            if (!dirty[cluster]) {
+                continue;
+            }
+            dirty[cluster] = false;
+            previousIds = ensure(previousIds, previousCount + 1);
+            previousIds[previousCount] = ids[cluster];
+            for (int cell = head[cluster]; cell != NONE; cell = nextMember[cell]) {
+                clusterByCell[cell] = NONE;
+                previousClusterByCell[cell] = previousCount;
+                previousStamps[cell] = stamp;
+                seeds[seedCount++] = cell;
+            }
+            previousCount++;
+            if (cluster != count - 1) {
+                moveCluster(count - 1, cluster);
+            }
+            count--;
+        }
+
+        int firstNew = count;
+        for (int i = 0; i < seedCount; i++) {
+            int cell = seeds[i];
+            if (map.getEnemyCount(cell) > 0 && clusterByCell[cell] == NONE) {
+                grow(count + 1);
+                fill(cell, count++);
+            }
+        }
+
+        assignIds(firstNew, previousCount);
+        map.clearChanged();
+    }
+
+    int size() {
+        return count;
+    }
+
+    int getId(int cluster) {
+        return ids[cluster];
+    }
+
+    int getCount(int cluster) {
+        return sizes[cluster];
+    }
+
+    int getCount(VehicleType type, int cluster) {
+        return composition[type.ordinal()][cluster];
+    }
+
+    double getX(int cluster) {
+        return centerX[cluster];
+    }
+
+    double getY(int cluster) {
+        return centerY[cluster];
+    }
+
+    double getLeft(int cluster) {
+        return left[cluster] * map.getCellWidth();
+    }
+
+    double getTop(int cluster) {
+        return top[cluster] * map.getCellHeight();
+    }
+
+    double getRight(int cluster) {
+        return (right[cluster] + 1) * map.getCellWidth();
+    }
+
+    double getBottom(int cluster) {
+        return (bottom[cluster] + 1) * map.getCellHeight();
+    }
+
+    /**
+     * @return Скопление, которому принадлежит клетка, или {@code -1}.
+     */
+    int getClusterOfCell(int cell) {
+        return clusterByCell[cell];
+    }
+
+    /**
+     * @return Ближайшее к точке скопление не меньше {@code minSize} единиц техники или {@code -1}.
+     */
+    int nearest(double x, double y, int minSize) {
+        int best = NONE;
+        double bestDistance = Double.MAX_VALUE;
+        for (int cluster = 0; cluster < count; cluster++) {
+            if (sizes[cluster] < minSize) {
+                continue;
+            }
+            double dx = centerX[cluster] - x;
+            double dy = centerY[cluster] - y;
+            double distance = dx * dx + dy * dy;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = cluster;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Обходит компоненту, начиная с клетки {@code start}, и собирает её размер, центр, состав и границы.
+     */
+    private void fill(int start, int cluster) {
+        sizes[cluster] = 0;
+        for (int type = 0; type < TYPES; type++) {
+            composition[type][cluster] = 0;
+        }
+        left[cluster] = columns;
+        top[cluster] = rows;
+        right[cluster] = -1;
+        bottom[cluster] = -1;
+        sumX[cluster] = 0;
+        sumY[cluster] = 0;
+
+        head[cluster] = NONE;
+        int size = 0;
+        stack[size++] = start;
+        clusterByCell[start] = cluster;
+        while (size > 0) {
+            int cell = stack[--size];
+            nextMember[cell] = head[cluster];
+            head[cluster] = cell;
+            int column = cell % columns;
+            int row = cell / columns;
+            sizes[cluster] += map.getEnemyCount(cell);
+            for (VehicleType type : VehicleType.values()) {
+                composition[type.ordinal()][cluster] += map.getEnemyCount(type, cell);
+            }
+            sumX[cluster] += map.getSumX(cell);
+            sumY[cluster] += map.getSumY(cell);
+            left[cluster] = Math.min(left[cluster], column);
+            top[cluster] = Math.min(top[cluster], row);
+            right[cluster] = Math.max(right[cluster], column);
+            bottom[cluster] = Math.max(bottom[cluster], row);
+
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                    int neighbour = r * columns + c;
+                    if (clusterByCell[neighbour] == NONE && map.getEnemyCount(neighbour) > 0) {
+                        clusterByCell[neighbour] = cluster;
+                        stack[size++] = neighbour;
+                    }
+                }
+            }
+        }
+        centerX[cluster] = sumX[cluster] / sizes[cluster];
+        centerY[cluster] = sumY[cluster] / sizes[cluster];
+    }
+
+    private void markDirty(int cluster) {
+        if (cluster != NONE) {
+            dirty[cluster] = true;
+        }
+    }
+
+    /**
+     * Переносит скопление {@code from} в освободившийся номер {@code to} вместе с разметкой его клеток.
+     */
+    private void moveCluster(int from, int to) {
+        head[to] = head[from];
+        ids[to] = ids[from];
+        sizes[to] = sizes[from];
+        sumX[to] = sumX[from];
+        sumY[to] = sumY[from];
+        centerX[to] = centerX[from];
+        centerY[to] = centerY[from];
+        left[to] = left[from];
+        top[to] = top[from];
+        right[to] = right[from];
+        bottom[to] = bottom[from];
+        for (int type = 0; type < TYPES; type++) {
+            composition[type][to] = composition[type][from];
+        }
+        for (int cell = head[to]; cell != NONE; cell = nextMember[cell]) {
+            clusterByCell[cell] = to;
+        }
+    }
+
+    /**
+     * Раздаёт новым компонентам с номерами от {@code firstNew} номера затронутых скоплений по наибольшему пересечению.
+     * Компоненты обходятся от больших к меньшим, чтобы при распаде скопления его номер достался основной части.
+     */
+    private void assignIds(int firstNew, int previousCount) {
+        overlap = ensure(overlap, previousCount);
+        if (claimed.length < previousCount) {
+            claimed = new boolean[overlap.length];
+        }
+        Arrays.fill(claimed, 0, previousCount, false);
+
+        int newCount = count - firstNew;
+        order = ensure(order, newCount);
+        for (int i = 0; i < newCount; i++) {
+            int cluster = firstNew + i;
+            int position = i;
+            while (position > 0 && sizes[order[position - 1]] < sizes[cluster]) {
+                order[position] = order[position - 1];
+                position--;
+            }
+            order[position] = cluster;
+        }
+
+        for (int i = 0; i < newCount; i++) {
+            int cluster = order[i];
+            Arrays.fill(overlap, 0, previousCount, 0);
+            for (int cell = head[cluster]; cell != NONE; cell = nextMember[cell]) {
+                if (previousStamps[cell] == stamp) {
+                    overlap[previousClusterByCell[cell]] += map.getEnemyCount(cell);
+                }
+            }
+            int best = NONE;
+            for (int previous = 0; previous < previousCount; previous++) {
+                if (!claimed[previous] && overlap[previous] > 0 && (best == NONE || overlap[previous] > overlap[best])) {
+                    best = previous;
+                }
+            }
+            if (best == NONE) {
+                ids[cluster] = nextId++;
+            } else {
+                claimed[best] = true;
+                ids[cluster] = previousIds[best];
+            }
+        }
+    }
+
+    private void grow(int capacity) {
+        if (capacity <= sizes.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, sizes.length * 2);
+        head = Arrays.copyOf(head, newCapacity);
+        ids = Arrays.copyOf(ids, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        sumX = Arrays.copyOf(sumX, newCapacity);
+        sumY = Arrays.copyOf(sumY, newCapacity);
+        centerX = Arrays.copyOf(centerX, newCapacity);
+        centerY = Arrays.copyOf(centerY, newCapacity);
+        left = Arrays.copyOf(left, newCapacity);
+        top = Arrays.copyOf(top, newCapacity);
+        right = Arrays.copyOf(right, newCapacity);
+        bottom = Arrays.copyOf(bottom, newCapacity);
+        dirty = Arrays.copyOf(dirty, newCapacity);
+        for (int type = 0; type < TYPES; type++) {
+            composition[type] = Arrays.copyOf(composition[type], newCapacity);
+        }
+    }
+
+    private static int[] ensure(int[] array, int capacity) {
+        return capacity <= array.length ? array : new int[Math.max(capacity, array.length * 2)];
+    }
+}
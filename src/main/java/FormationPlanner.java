@@ -0,0 +1,555 @@
+import model.Game;
+import model.VehicleType;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Построение армии из начальной расстановки в «бутерброд».
+ * <p>
+ * Сначала каждый тип выводится в свою колонну на линии построения ({@link Phase#GATHER}). Колонны назначаются
+ * венгерским алгоритмом по времени пути отдельно для наземных и воздушных типов. Сдвиги типов по вертикали
+ * сразу входят в цель колонны, а не делаются отдельным шагом. Тип идёт к колонне напрямую, если прямоугольник,
+ * который он заметает по дороге, не пересекает занятого другими типами того же слоя. Иначе он идёт углом, сначала
+ * по горизонтали или по вертикали, или ждёт. Каждый тип получает следующий приказ, как только остановится сам, не
+ * дожидаясь остальных. Растяжка рядов БРЭМ ({@link Phase#SPREAD}) начинается, как только БРЭМ пришли и их полоса
+ * свободна. Дальше типы сводятся в одну колонну ({@link Phase#MERGE}), а ряды и столбцы сжимаются вдвое
+ * ({@link Phase#COMPRESS_ROWS}, {@link Phase#COMPRESS_COLUMNS}), каждый шаг после полной остановки.
+ * <p>
+ * Наземная техника сталкивается только с наземной, воздушная — только с воздушной, поэтому слои проверяются
+ * отдельно.
+ */
+final class FormationPlanner {
+    enum Phase {
+        GATHER,
+
+        SPREAD,
+
+        MERGE,
+
+        COMPRESS_ROWS,
+
+        COMPRESS_COLUMNS,
+
+        DONE
+    }
+
+    private static final int TYPE_COUNT = VehicleType.values().length;
+    private static final VehicleType[] GROUND = {VehicleType.TANK, VehicleType.IFV, VehicleType.ARRV};
+    private static final VehicleType[] AIR = {VehicleType.HELICOPTER, VehicleType.FIGHTER};
+    private static final double ARRIVAL_TOLERANCE = 2;
+    /**
+     * После стольких поправочных или вынужденных приказов тип считается пришедшим, даже если столкновения не дали
+     * дойти точно.
+     */
+    private static final int MAX_CORRECTIONS = 3;
+    private static final double SPEED_FACTOR = 0.6;
+    /**
+     * Запас на замедление местностью и погодой при оценке, когда движущийся тип закончит приказ.
+     */
+    private static final double DELAY_FACTOR = 1.7;
+
+    private final VehicleStore vehicles;
+    private final SettleTracker settle;
+    private final Game game;
+    private final double width;
+    private final double height;
+    private final double margin;
+
+    private final int[] counts = new int[TYPE_COUNT];
+    private final double[] sumXs = new double[TYPE_COUNT];
+    private final double[] sumYs = new double[TYPE_COUNT];
+    private final double[] lefts = new double[TYPE_COUNT];
+    private final double[] tops = new double[TYPE_COUNT];
+    private final double[] rights = new double[TYPE_COUNT];
+    private final double[] bottoms = new double[TYPE_COUNT];
+    private final boolean[] moving = new boolean[TYPE_COUNT];
+
+    private final double[] slotXs = new double[TYPE_COUNT];
+    private final double[] slotYs = new double[TYPE_COUNT];
+    /**
+     * Куда идёт центр типа по текущему приказу. Приказ действует, пока тип движется или приказ ещё в очереди.
+     */
+    private final double[] legXs = new double[TYPE_COUNT];
+    private final double[] legYs = new double[TYPE_COUNT];
+    private final boolean[] legActive = new boolean[TYPE_COUNT];
+    /**
+     * Полоса растяжки рядов БРЭМ, занятая, пока они движутся.
+     */
+    private final double[] spreadArea = new double[4];
+    private final boolean[] arrived = new boolean[TYPE_COUNT];
+    private final int[] corrections = new int[TYPE_COUNT];
+    private final BitSet lines = new BitSet();
+
+    private Phase phase = Phase.GATHER;
+    private double orderY;
+    private double center;
+    private boolean spread;
+
+    FormationPlanner(VehicleStore vehicles, SettleTracker settle, Game game, double width, double height) {
+        this.vehicles = vehicles;
+        this.settle = settle;
+        this.game = game;
+        this.width = width;
+        this.height = height;
+        this.margin = game.getVehicleRadius() + 1;
+    }
+
+    /**
+     * Назначает типам колонны построения.
+     *
+     * @param groundSlots Абсциссы колонн наземных типов.
+     * @param airSlots    Абсциссы колонн воздушных типов.
+     * @param orderY      Ордината линии построения.
+     * @param center      Абсцисса колонны, в которую потом сводятся все типы.
+     */
+    void begin(double[] groundSlots, double[] airSlots, double orderY, double center) {
+        this.orderY = orderY;
+        this.center = center;
+        measure();
+        assign(GROUND, groundSlots);
+        assign(AIR, airSlots);
+        slotYs[VehicleType.TANK.ordinal()] += 5;
+        slotYs[VehicleType.IFV.ordinal()] -= 5;
+        slotYs[VehicleType.FIGHTER.ordinal()] += 5;
+    }
+
+    Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Ставит в очередь следующие приказы построения. Вызывается, когда очередь пуста.
+     *
+     * @return Возвращает {@code true}, если построение закончено и техника остановилась.
+     */
+    boolean step(CommandQueue queue) {
+        measure();
+        switch (phase) {
+            case GATHER:
+            case SPREAD:
+                gather(queue);
+                break;
+            case MERGE:
+                if (isSettled()) {
+                    for (VehicleType type : VehicleType.values()) {
+                        int t = type.ordinal();
+                        if (counts[t] == 0) {
+                            continue;
+                        }
+                        double dx = center - sumXs[t] / counts[t];
+                        queue.add(selectType(type));
+                        queue.add(Command.move(dx, 0, Math.min(Math.abs(dx), ForwardModel.getSpeed(game, type) * SPEED_FACTOR)));
+                    }
+                    phase = Phase.COMPRESS_ROWS;
+                }
+                break;
+            case COMPRESS_ROWS:
+                if (isSettled()) {
+                    markLines(SpatialGrid.ALL_TYPES, true);
+                    for (int row = lines.nextSetBit(0); row >= 0; row = lines.nextSetBit(row + 1)) {
+                        queue.add(Command.select(0, row - 1, width, row + 1));
+                        queue.add(Command.move(0, (int) -(row - orderY) / 2, 0));
+                    }
+                    phase = Phase.COMPRESS_COLUMNS;
+                }
+                break;
+            case COMPRESS_COLUMNS:
+                if (isSettled()) {
+                    boolean shift = false;
+                    markLines(SpatialGrid.ALL_TYPES, false);
+                    for (int column = lines.nextSetBit(0); column >= 0; column = lines.nextSetBit(column + 1)) {
+                        queue.add(Command.select(column - 1, 0, column + 1, height));
+                        queue.add(Command.move((int) -(column - center) / 2, shift ? -5 : 0, game.getTankSpeed() * SPEED_FACTOR));
+                        shift = !shift;
+                    }
+                    phase = Phase.DONE;
+                }
+                break;
+            default:
+                break;
+        }
+        return phase == Phase.DONE && isSettled();
+    }
+
+    /**
+     * Ведёт каждый остановившийся тип к его колонне, а пришедшие БРЭМ растягивает. Если никто не движется и ни один
+     * приказ не прошёл проверку, первый ждущий тип идёт без проверки: по горизонтали, как при старом построении, а
+     * если по горизонтали он уже на месте — остаток пути. Вынужденный приказ считается поправочным, поэтому
+     * построение не может зациклиться.
+     */
+    private void gather(CommandQueue queue) {
+        boolean issued = false;
+        boolean anyMoving = false;
+        int waiting = -1;
+        for (int t = 0; t < TYPE_COUNT; t++) {
+            legActive[t] &= moving[t];
+        }
+        for (VehicleType type : VehicleType.values()) {
+            int t = type.ordinal();
+            if (counts[t] == 0) {
+                arrived[t] = true;
+                continue;
+            }
+            if (moving[t]) {
+                anyMoving = true;
+                continue;
+            }
+            if (!arrived[t]) {
+                double dx = slotXs[t] - sumXs[t] / counts[t];
+                double dy = slotYs[t] - sumYs[t] / counts[t];
+                if (Math.abs(dx) <= ARRIVAL_TOLERANCE && Math.abs(dy) <= ARRIVAL_TOLERANCE
+                        || corrections[t] >= MAX_CORRECTIONS) {
+                    arrived[t] = true;
+                } else if (issueLeg(queue, type, dx, dy)) {
+                    issued = true;
+                    continue;
+                } else {
+                    if (waiting < 0) {
+                        waiting = t;
+                    }
+                    continue;
+                }
+            }
+            if (type == VehicleType.ARRV && !spread) {
+                if (issueSpread(queue)) {
+                    issued = true;
+                } else if (waiting < 0) {
+                    waiting = t;
+                }
+            }
+        }
+
+        if (!issued && !anyMoving && waiting >= 0) {
+            VehicleType type = VehicleType.values()[waiting];
+            if (arrived[waiting]) {
+                spreadRows(queue);
+            } else {
+                double dx = slotXs[waiting] - sumXs[waiting] / counts[waiting];
+                double dy = slotYs[waiting] - sumYs[waiting] / counts[waiting];
+                corrections[waiting]++;
+                if (Math.abs(dx) > ARRIVAL_TOLERANCE) {
+                    issue(queue, type, dx, 0);
+                } else {
+                    issue(queue, type, dx, dy);
+                }
+            }
+        }
+
+        boolean done = spread || counts[VehicleType.ARRV.ordinal()] == 0;
+        for (int t = 0; t < TYPE_COUNT; t++) {
+            done &= arrived[t];
+        }
+        if (done) {
+            phase = Phase.MERGE;
+        } else if (allArrived()) {
+            phase = Phase.SPREAD;
+        }
+    }
+
+    /**
+     * Приказ к колонне: напрямую, а если путь занят — углом, сначала по горизонтали или по вертикали. Угол
+     * выбирается, только если свободны оба его отрезка.
+     */
+    private boolean issueLeg(CommandQueue queue, VehicleType type, double dx, double dy) {
+        int t = type.ordinal();
+        if (isClear(t, 0, 0, dx, dy)) {
+            if (dx * dx + dy * dy <= 4 * ARRIVAL_TOLERANCE * ARRIVAL_TOLERANCE) {
+                corrections[t]++;
+            }
+            issue(queue, type, dx, dy);
+            return true;
+        }
+        if (dx != 0 && dy != 0) {
+            if (isClear(t, 0, 0, dx, 0) && isClear(t, dx, 0, 0, dy)) {
+                issue(queue, type, dx, 0);
+                return true;
+            }
+            if (isClear(t, 0, 0, 0, dy) && isClear(t, 0, dy, dx, 0)) {
+                issue(queue, type, 0, dy);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void issue(CommandQueue queue, VehicleType type, double dx, double dy) {
+        int t = type.ordinal();
+        legXs[t] = sumXs[t] / counts[t] + dx;
+        legYs[t] = sumYs[t] / counts[t] + dy;
+        legActive[t] = true;
+        queue.add(selectType(type));
+        queue.add(Command.move(dx, dy, ForwardModel.getSpeed(game, type) * SPEED_FACTOR));
+    }
+
+    /**
+     * Растягивает ряды БРЭМ втрое относительно линии построения, если растянутая полоса не задевает другие
+     * наземные типы.
+     */
+    private boolean issueSpread(CommandQueue queue) {
+        int t = VehicleType.ARRV.ordinal();
+        double top = orderY + 3 * (tops[t] - orderY);
+        double bottom = orderY + 3 * (bottoms[t] - orderY);
+        if (!isFree(t, lefts[t], Math.min(top, tops[t]), rights[t], Math.max(bottom, bottoms[t]))) {
+            return false;
+        }
+        spreadArea[0] = lefts[t];
+        spreadArea[1] = Math.min(top, tops[t]);
+        spreadArea[2] = rights[t];
+        spreadArea[3] = Math.max(bottom, bottoms[t]);
+        spreadRows(queue);
+        return true;
+    }
+
+    private void spreadRows(CommandQueue queue) {
+        spread = true;
+        markLines(1 << VehicleType.ARRV.ordinal(), true);
+        for (int row = lines.nextSetBit(0); row >= 0; row = lines.nextSetBit(row + 1)) {
+            queue.add(Command.select(0, row - 1, width, row + 1));
+            queue.add(Command.move(0, (int) (row - orderY) * 2, 0));
+        }
+    }
+
+    /**
+     * @return Возвращает {@code true}, если тип, сдвинутый на {@code (fromX, fromY)} и идущий оттуда на
+     * {@code (dx, dy)}, не заметает ничего занятого другими типами своего слоя.
+     */
+    private boolean isClear(int t, double fromX, double fromY, double dx, double dy) {
+        return isFree(t, lefts[t] + fromX + Math.min(0, dx), tops[t] + fromY + Math.min(0, dy),
+                rights[t] + fromX + Math.max(0, dx), bottoms[t] + fromY + Math.max(0, dy));
+    }
+
+    /**
+     * Проверяет рамку пути типа {@code t} против других типов его слоя. Движущийся тип занимает рамку, которую он
+     * заметает от текущего положения до конца приказа. Если он закончит приказ раньше, чем {@code t} успеет дойти до
+     * этой рамки даже на полной скорости, в расчёт идёт только его конечное положение.
+     *
+     * @return Возвращает {@code true}, если рамка ничего не задевает.
+     */
+    private boolean isFree(int t, double left, double top, double right, double bottom) {
+        boolean aerial = InfluenceMap.isAerial(VehicleType.values()[t]);
+        double speed = ForwardModel.getSpeed(game, VehicleType.values()[t]);
+        for (int other = 0; other < TYPE_COUNT; other++) {
+            VehicleType otherType = VehicleType.values()[other];
+            if (other == t || counts[other] == 0 || InfluenceMap.isAerial(otherType) != aerial) {
+                continue;
+            }
+            double otherLeft = lefts[other];
+            double otherTop = tops[other];
+            double otherRight = rights[other];
+            double otherBottom = bottoms[other];
+            if (legActive[other]) {
+                double dx = legXs[other] - sumXs[other] / counts[other];
+                double dy = legYs[other] - sumYs[other] / counts[other];
+                double remaining = Math.hypot(dx, dy) / (ForwardModel.getSpeed(game, otherType) * SPEED_FACTOR) * DELAY_FACTOR;
+                double reach = gap(lefts[t], tops[t], rights[t], bottoms[t], otherLeft + Math.min(0, dx),
+                        otherTop + Math.min(0, dy), otherRight + Math.max(0, dx), otherBottom + Math.max(0, dy)) / speed;
+                if (remaining < reach) {
+                    otherLeft += dx;
+                    otherRight += dx;
+                    otherTop += dy;
+                    otherBottom += dy;
+                } else {
+                    otherLeft += Math.min(0, dx);
+                    otherTop += Math.min(0, dy);
+                    otherRight += Math.max(0, dx);
+                    otherBottom += Math.max(0, dy);
+                }
+            }
+            if (intersects(left, top, right, bottom, otherLeft, otherTop, otherRight, otherBottom)) {
+                return false;
+            }
+            if (otherType == VehicleType.ARRV && spread && moving[other]
+                    && intersects(left, top, right, bottom, spreadArea[0], spreadArea[1], spreadArea[2], spreadArea[3])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Наименьший сдвиг, после которого рамки с отступом {@link #margin} могли бы соприкоснуться.
+     */
+    private double gap(double l1, double t1, double r1, double b1, double l2, double t2, double r2, double b2) {
+        return Math.max(0, Math.max(Math.max(l2 - r1, l1 - r2), Math.max(t2 - b1, t1 - b2)) - 2 * margin);
+    }
+
+    /**
+     * @return Возвращает {@code true}, если рамки, расширенные на {@link #margin}, пересекаются.
+     */
+    private boolean intersects(double l1, double t1, double r1, double b1,
+                               double l2, double t2, double r2, double b2) {
+        return l1 - margin < r2 + margin && l2 - margin < r1 + margin && t1 - margin < b2 + margin && t2 - margin < b1 + margin;
+    }
+
+    private boolean allArrived() {
+        for (int t = 0; t < TYPE_COUNT; t++) {
+            if (!arrived[t]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSettled() {
+        for (int t = 0; t < TYPE_COUNT; t++) {
+            if (moving[t]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Назначает типам колонны на линии построения. Построение ждёт самый поздний тип, поэтому сначала ищется
+     * наименьшее время самого долгого пути, при котором назначение существует, а среди таких назначений венгерский
+     * алгоритм выбирает назначение с наименьшим суммарным временем.
+     */
+    private void assign(VehicleType[] types, double[] slots) {
+        double[][] time = new double[types.length][slots.length];
+        double[] thresholds = new double[types.length * slots.length];
+        for (int i = 0; i < types.length; i++) {
+            int t = types[i].ordinal();
+            double speed = ForwardModel.getSpeed(game, types[i]);
+            for (int j = 0; j < slots.length; j++) {
+                time[i][j] = counts[t] == 0 ? 0 : Geometry.distance(sumXs[t] / counts[t], sumYs[t] / counts[t], slots[j], orderY) / speed;
+                thresholds[i * slots.length + j] = time[i][j];
+            }
+        }
+        Arrays.sort(thresholds);
+
+        double forbidden = thresholds[thresholds.length - 1] * types.length + 1;
+        double[][] cost = new double[types.length][slots.length];
+        int[] slotByType = null;
+        for (double threshold : thresholds) {
+            for (int i = 0; i < types.length; i++) {
+                for (int j = 0; j < slots.length; j++) {
+                    cost[i][j] = time[i][j] <= threshold ? time[i][j] : forbidden;
+                }
+            }
+            slotByType = hungarian(cost);
+            if (isWithin(time, slotByType, threshold)) {
+                break;
+            }
+        }
+        for (int i = 0; i < types.length; i++) {
+            slotXs[types[i].ordinal()] = slots[slotByType[i]];
+            slotYs[types[i].ordinal()] = orderY;
+        }
+    }
+
+    private static boolean isWithin(double[][] time, int[] slotByType, double threshold) {
+        for (int i = 0; i < slotByType.length; i++) {
+            if (time[i][slotByType[i]] > threshold) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Венгерский алгоритм для задачи о назначениях с {@code n <= m}, O(n^2 m).
+     *
+     * @return Номер столбца для каждой строки.
+     */
+    static int[] hungarian(double[][] cost) {
+        int n = cost.length;
+        int m = cost[0].length;
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];
+        int[] way = new int[m + 1];
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            double[] minv = new double[m + 1];
+            boolean[] used = new boolean[m + 1];
+            Arrays.fill(minv, Double.MAX_VALUE);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                double delta = Double.MAX_VALUE;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (!used[j]) {
+                        double cur = cost[i0 - 1][j - 1] - u[i0] - v[j];
+                        if (cur < minv[j]) {
+                            minv[j] = cur;
+                            way[j] = j0;
+                        }
+                        if (minv[j] < delta) {
+                            delta = minv[j];
+                            j1 = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+        int[] result = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) {
+                result[p[j] - 1] = j - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Пересчитывает по типам число, сумму координат, рамку нашей техники и признак движения.
+     */
+    private void measure() {
+        for (int t = 0; t < TYPE_COUNT; t++) {
+            counts[t] = 0;
+            sumXs[t] = 0;
+            sumYs[t] = 0;
+            lefts[t] = Double.MAX_VALUE;
+            tops[t] = Double.MAX_VALUE;
+            rights[t] = -Double.MAX_VALUE;
+            bottoms[t] = -Double.MAX_VALUE;
+            moving[t] = false;
+        }
+        for (int id = 0; id < vehicles.size(); id++) {
+            if (!vehicles.isAlive(id) || !vehicles.isAlly(id)) {
+                continue;
+            }
+            int t = vehicles.getTypeOrdinal(id);
+            double x = vehicles.getX(id);
+            double y = vehicles.getY(id);
+            counts[t]++;
+            sumXs[t] += x;
+            sumYs[t] += y;
+            lefts[t] = Math.min(lefts[t], x);
+            tops[t] = Math.min(tops[t], y);
+            rights[t] = Math.max(rights[t], x);
+            bottoms[t] = Math.max(bottoms[t], y);
+            moving[t] |= settle.isMoving(id);
+        }
+    }
+
+    private void markLines(int typeMask, boolean rows) {
+        lines.clear();
+        for (int id = 0; id < vehicles.size(); id++) {
+            if (vehicles.isAlive(id) && vehicles.isAlly(id) && (typeMask & (1 << vehicles.getTypeOrdinal(id))) != 0) {
+                lines.set((int) (rows ? vehicles.getY(id) : vehicles.getX(id)));
+            }
+        }
+    }
+
+    private Command selectType(VehicleType type) {
+        return Command.selectAll(width, height, type, 0);
+    }
+}
@@ -0,0 +1,258 @@
+import model.ActionType;
+import model.Game;
+import model.VehicleType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Упрощённая модель наших собственных манёвров на несколько тиков вперёд.
+ * <p>
+ * Раз в тик положения техники группы снимаются в базовый {@link Snapshot}, который потом не меняется. Каждый
+ * кандидат получает свою копию из пула, к ней аналитически применяется перемещение, масштабирование или поворот:
+ * каждая техника проходит к своей цели не больше {@code скорость * тики}, где скорость зависит от типа и от
+ * местности или погоды в клетке, с которой техника начинает. Противник считается неподвижным, столкновения не
+ * учитываются. Итог оценивается по {@link InfluenceMap#getExchange}.
+ * <p>
+ * Если задано свойство {@code strategy.lookaheadThreads}, последовательности, переданные в
+ * {@link #evaluate(Command[], int[][], int, int, int, int, double[])}, оцениваются параллельно на стольких потоках;
+ * по умолчанию — в вызывающем потоке, и тогда оценка не создаёт объектов. Потоки пула завершаются, если простаивают
+ * дольше {@link #IDLE_TIMEOUT_SECONDS}, чтобы не переживать игру.
+ */
+final class ForwardModel {
+    private static final int CAPACITY = 1024;
+    private static final long IDLE_TIMEOUT_SECONDS = 1;
+
+    private final VehicleStore vehicles;
+    private final InfluenceMap influence;
+    private final float[] speedByType = new float[VehicleType.values().length];
+    private final boolean[] aerialByType = new boolean[VehicleType.values().length];
+    private final Snapshot base = new Snapshot();
+    private final ArrayDeque<Snapshot> pool = new ArrayDeque<>();
+    private final List<Task> tasks = new ArrayList<>();
+    private final ThreadPoolExecutor executor;
+    private int captureGroup;
+    private final IntConsumer capturer = this::captureVehicle;
+
+    static final class Snapshot {
+        final float[] x = new float[CAPACITY];
+        final float[] y = new float[CAPACITY];
+        final float[] speed = new float[CAPACITY];
+        final byte[] type = new byte[CAPACITY];
+        int count;
+
+        void copyFrom(Snapshot other) {
+            count = other.count;
+            System.arraycopy(other.x, 0, x, 0, count);
+            System.arraycopy(other.y, 0, y, 0, count);
+            System.arraycopy(other.speed, 0, speed, 0, count);
+            System.arraycopy(other.type, 0, type, 0, count);
+        }
+    }
+
+    /**
+     * Оценка одной последовательности в пуле потоков.
+     */
+    private final class Task implements Callable<Task> {
+        Command[] actions;
+        int[] sequence;
+        int length;
+        int ticks;
+        double score;
+
+        @Override
+        public Task call() {
+            score = evaluate(actions, sequence, length, ticks);
+            return this;
+        }
+    }
+
+    ForwardModel(VehicleStore vehicles, InfluenceMap influence, Game game) {
+        this.vehicles = vehicles;
+        this.influence = influence;
+        for (VehicleType type : VehicleType.values()) {
+            speedByType[type.ordinal()] = (float) getSpeed(game, type);
+            aerialByType[type.ordinal()] = InfluenceMap.isAerial(type);
+        }
+        int threads = Integer.getInteger("strategy.lookaheadThreads", 0);
+        if (threads <= 0) {
+            executor = null;
+        } else {
+            executor = new ThreadPoolExecutor(threads, threads, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), (runnable) -> {
+                Thread thread = new Thread(runnable, "lookahead");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    static double getSpeed(Game game, VehicleType type) {
+        switch (type) {
+            case ARRV:
+                return game.getArrvSpeed();
+            case FIGHTER:
+                return game.getFighterSpeed();
+            case HELICOPTER:
+                return game.getHelicopterSpeed();
+            case IFV:
+                return game.getIfvSpeed();
+            default:
+                return game.getTankSpeed();
+        }
+    }
+
+    /**
+     * Снимает положения нашей техники из группы {@code group} в базовый снимок.
+     */
+    void capture(int group) {
+        base.count = 0;
+        captureGroup = group;
+        vehicles.forEach(true, SpatialGrid.ALL_TYPES, capturer);
+    }
+
+    private void captureVehicle(int id) {
+        if ((vehicles.getGroups(id) & (1L << captureGroup)) == 0 || base.count == CAPACITY) {
+            return;
+        }
+        int index = base.count++;
+        int type = vehicles.getTypeOrdinal(id);
+        base.x[index] = (float) vehicles.getX(id);
+        base.y[index] = (float) vehicles.getY(id);
+        base.type[index] = (byte) type;
+        base.speed[index] = speedByType[type]
+                * influence.getSpeedFactor(aerialByType[type], influence.getCell(base.x[index], base.y[index]));
+    }
+
+    boolean isParallel() {
+        return executor != null;
+    }
+
+    /**
+     * Оценивает последовательности {@code sequences[from]}, ..., {@code sequences[to - 1]} одной длины и пишет
+     * оценки в {@code scores} под теми же индексами. С пулом потоков они считаются параллельно.
+     */
+    void evaluate(Command[] actions, int[][] sequences, int from, int to, int length, int ticks, double[] scores) {
+        if (executor == null || to - from < 2) {
+            for (int i = from; i < to; i++) {
+                scores[i] = evaluate(actions, sequences[i], length, ticks);
+            }
+            return;
+        }
+        while (tasks.size() < to - from) {
+            tasks.add(new Task());
+        }
+        for (int i = from; i < to; i++) {
+            Task task = tasks.get(i - from);
+            task.actions = actions;
+            task.sequence = sequences[i];
+            task.length = length;
+            task.ticks = ticks;
+        }
+        try {
+            for (Future<Task> future : executor.invokeAll(tasks.subList(0, to - from))) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        for (int i = from; i < to; i++) {
+            scores[i] = tasks.get(i - from).score;
+        }
+    }
+
+    /**
+     * Оценивает последовательность действий в текущем потоке: каждое действие длится {@code ticks} тиков.
+     *
+     * @param sequence Индексы действий в {@code actions}, используются первые {@code length}.
+     */
+    double evaluate(Command[] actions, int[] sequence, int length, int ticks) {
+        Snapshot snapshot = acquire();
+        snapshot.copyFrom(base);
+        for (int i = 0; i < length; i++) {
+            apply(snapshot, actions[sequence[i]], ticks);
+        }
+        double score = evaluate(snapshot);
+        release(snapshot);
+        return score;
+    }
+
+    /**
+     * Применяет действие к снимку на {@code ticks} тиков. Выделение не моделируется: действие касается всей техники
+     * снимка.
+     */
+    static void apply(Snapshot snapshot, Command command, int ticks) {
+        for (int i = 0; i < snapshot.count; i++) {
+            float speed = snapshot.speed[i];
+            if (command.maxSpeed > 0) {
+                speed = Math.min(speed, (float) command.maxSpeed);
+            }
+            float path = speed * ticks;
+            float x = snapshot.x[i];
+            float y = snapshot.y[i];
+
+            if (command.action == ActionType.ROTATE) {
+                float dx = x - (float) command.x;
+                float dy = y - (float) command.y;
+                float radius = (float) Math.sqrt(dx * dx + dy * dy);
+                double step = radius > 1e-6f ? Math.min(Math.abs(command.angle), path / radius) : Math.abs(command.angle);
+                step *= Math.signum(command.angle);
+                float cos = (float) Math.cos(step);
+                float sin = (float) Math.sin(step);
+                snapshot.x[i] = (float) command.x + dx * cos - dy * sin;
+                snapshot.y[i] = (float) command.y + dx * sin + dy * cos;
+                continue;
+            }
+
+            float targetX;
+            float targetY;
+            if (command.action == ActionType.SCALE) {
+                targetX = (float) (command.x + (x - command.x) * command.factor);
+                targetY = (float) (command.y + (y - command.y) * command.factor);
+            } else {
+                targetX = x + (float) command.x;
+                targetY = y + (float) command.y;
+            }
+            float dx = targetX - x;
+            float dy = targetY - y;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy);
+            if (distance <= path) {
+                snapshot.x[i] = targetX;
+                snapshot.y[i] = targetY;
+            } else {
+                snapshot.x[i] = x + dx / distance * path;
+                snapshot.y[i] = y + dy / distance * path;
+            }
+        }
+    }
+
+    private double evaluate(Snapshot snapshot) {
+        double score = 0;
+        for (int i = 0; i < snapshot.count; i++) {
+            score += influence.getExchange(snapshot.type[i], influence.getCell(snapshot.x[i], snapshot.y[i]));
+        }
+        return score;
+    }
+
+    private Snapshot acquire() {
+        synchronized (pool) {
+            Snapshot snapshot = pool.poll();
+            return snapshot != null ? snapshot : new Snapshot();
+        }
+    }
+
+    private void release(Snapshot snapshot) {
+        synchronized (pool) {
+            pool.push(snapshot);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Геометрия на примитивах. Сравнения расстояний идут по квадратам, без извлечения корня; векторы передаются парами
+ * координат, поэтому вызовы не создают объектов.
+ */
+final class Geometry {
+    private Geometry() {
+    }
+
+    static double distanceSquared(double x1, double y1, double x2, double y2) {
+        double dx = x1 - x2;
+        double dy = y1 - y2;
+        return dx * dx + dy * dy;
+    }
+
+    static double distance(double x1, double y1, double x2, double y2) {
+        return Math.sqrt(distanceSquared(x1, y1, x2, y2));
+    }
+
+    /**
+     * @return Возвращает {@code true}, если точки не дальше {@code radius} друг от друга.
+     */
+    static boolean within(double x1, double y1, double x2, double y2, double radius) {
+        return distanceSquared(x1, y1, x2, y2) <= radius * radius;
+    }
+
+    /**
+     * @return Угол поворота от вектора {@code a} к вектору {@code b} в диапазоне {@code [-PI, PI]}, положительный —
+     * против часовой стрелки в системе координат карты.
+     */
+    static double angle(double ax, double ay, double bx, double by) {
+        return Math.atan2(ax * by - ay * bx, ax * bx + ay * by);
+    }
+
+    static double rotateX(double x, double y, double angle) {
+        return x * Math.cos(angle) - y * Math.sin(angle);
+    }
+
+    static double rotateY(double x, double y, double angle) {
+        return x * Math.sin(angle) + y * Math.cos(angle);
+    }
+}
@@ -0,0 +1,82 @@
+import model.ActionType;
+
+/**
+ * Распределение групп нашей техники и выбор самого дешёвого выделения.
+ * <p>
+ * Группы постоянны: {@link #SPOTTER} — наводчик, {@link #ARMY} — вся остальная армия, начиная с
+ * {@link #FIRST_SQUAD_GROUP} — отряды. Отдельных групп по типам нет: выделение типа по всей карте стоит то же одно
+ * действие, что и выделение группы. Состав групп берётся из {@link VehicleStore#getGroups}, то есть из
+ * {@code VehicleUpdate.getGroups()}.
+ * <p>
+ * Признак выделения из последних {@code VehicleUpdate} уже учитывает все действия прошлых тиков, а действий больше
+ * одного за тик не бывает, поэтому в момент выдачи действия {@link #isSelected} точно знает, совпадает ли нужное
+ * выделение с текущим, и такое выделение можно пропустить.
+ */
+final class GroupManager {
+    static final int SPOTTER = 1;
+    static final int ARMY = 2;
+    static final int FIRST_SQUAD_GROUP = 3;
+
+    private final VehicleStore vehicles;
+
+    GroupManager(VehicleStore vehicles) {
+        this.vehicles = vehicles;
+    }
+
+    /**
+     * @return Сколько нашей живой техники указанных типов, кроме {@code except}, не входит в группу.
+     */
+    int countOutside(int group, int typeMask, int except) {
+        int count = 0;
+        for (int id = 0; id < vehicles.size(); id++) {
+            if (id != except && vehicles.isAlive(id) && vehicles.isAlly(id)
+                    && (typeMask & (1 << vehicles.getTypeOrdinal(id))) != 0
+                    && (vehicles.getGroups(id) & (1L << group)) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Возвращает {@code true}, если {@link ActionType#CLEAR_AND_SELECT} выделил бы ровно ту нашу технику,
+     * которая выделена сейчас. Выделение с группой, как и в игре, берёт всю группу без учёта рамки и типа.
+     */
+    boolean isSelected(Command selection) {
+        if (selection.action != ActionType.CLEAR_AND_SELECT) {
+            return false;
+        }
+        double left = selection.left;
+        double top = selection.top;
+        double right = selection.right;
+        double bottom = selection.bottom;
+        if (selection.vehicle >= 0) {
+            if (!vehicles.isAlive(selection.vehicle)) {
+                return false;
+            }
+            left = right = vehicles.getX(selection.vehicle);
+            top = bottom = vehicles.getY(selection.vehicle);
+        }
+
+        boolean any = false;
+        for (int id = 0; id < vehicles.size(); id++) {
+            if (!vehicles.isAlive(id) || !vehicles.isAlly(id)) {
+                continue;
+            }
+            boolean matches;
+            if (selection.group > 0) {
+                matches = (vehicles.getGroups(id) & (1L << selection.group)) != 0;
+            } else {
+                double x = vehicles.getX(id);
+                double y = vehicles.getY(id);
+                matches = x >= left && x <= right && y >= top && y <= bottom
+                        && (selection.vehicleType == null || selection.vehicleType == vehicles.getType(id));
+            }
+            if (matches != vehicles.isSelected(id)) {
+                return false;
+            }
+            any |= matches;
+        }
+        return any;
+    }
+}
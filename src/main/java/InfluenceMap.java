@@ -0,0 +1,438 @@
+import model.Game;
+import model.TerrainType;
+import model.VehicleType;
+import model.WeatherType;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Карта влияния на сетке местности и погоды: число техники противника по типам в каждой клетке и угроза, которую
+ * она создаёт для техники каждого типа, а также множители скорости и обзора наземной и воздушной техники.
+ * <p>
+ * Карта обновляется по изменениям: техника противника пересчитывается, только когда переходит в другую клетку.
+ * Угроза клетки включает половину угрозы соседних клеток, так как дальность атаки сравнима с размером клетки.
+ * Суммы координат по клеткам обновляются на каждое перемещение, чтобы центры скоплений считались без обхода техники.
+ */
+final class InfluenceMap {
+    private static final VehicleType[] TYPES = VehicleType.values();
+    private static final float NEIGHBOUR_SHARE = 0.5f;
+    private static final int NONE = -1;
+
+    private final VehicleStore vehicles;
+    private final int columns;
+    private final int rows;
+    private final double cellWidth;
+    private final double cellHeight;
+    private final int[][] counts;
+    private final int[] totals;
+    private final float[][] danger;
+    private final float[][] presence;
+    private final float[][] damage = new float[TYPES.length][TYPES.length];
+    private final float[] groundSpeed;
+    private final float[] airSpeed;
+    private final float[] groundVision;
+    private final float[] airVision;
+    private final double[] sumX;
+    private final double[] sumY;
+    private int[] cellById = new int[2048];
+    private double[] xById = new double[2048];
+    private double[] yById = new double[2048];
+    /**
+     * Клетки, где менялся состав техники противника, с последнего {@link #clearChanged}.
+     */
+    private final int[] changedCells;
+    private final boolean[] changed;
+    private int changedCount;
+
+    InfluenceMap(VehicleStore vehicles, Game game, double width, double height,
+                 TerrainType[][] terrainByCellXY, WeatherType[][] weatherByCellXY) {
+        this.vehicles = vehicles;
+        this.columns = terrainByCellXY.length;
+        this.rows = terrainByCellXY[0].length;
+        this.cellWidth = width / columns;
+        this.cellHeight = height / rows;
+        int cells = columns * rows;
+        this.counts = new int[TYPES.length][cells];
+        this.totals = new int[cells];
+        this.danger = new float[TYPES.length][cells];
+        this.presence = new float[TYPES.length][cells];
+        this.sumX = new double[cells];
+        this.sumY = new double[cells];
+        this.groundSpeed = new float[cells];
+        this.airSpeed = new float[cells];
+        this.groundVision = new float[cells];
+        this.airVision = new float[cells];
+        this.changedCells = new int[cells];
+        this.changed = new boolean[cells];
+        Arrays.fill(cellById, NONE);
+
+        for (int column = 0; column < columns; column++) {
+            for (int row = 0; row < rows; row++) {
+                int cell = row * columns + column;
+                switch (terrainByCellXY[column][row]) {
+                    case SWAMP:
+                        groundSpeed[cell] = (float) game.getSwampTerrainSpeedFactor();
+                        groundVision[cell] = (float) game.getSwampTerrainVisionFactor();
+                        break;
+                    case FOREST:
+                        groundSpeed[cell] = (float) game.getForestTerrainSpeedFactor();
+                        groundVision[cell] = (float) game.getForestTerrainVisionFactor();
+                        break;
+                    default:
+                        groundSpeed[cell] = (float) game.getPlainTerrainSpeedFactor();
+                        groundVision[cell] = (float) game.getPlainTerrainVisionFactor();
+                        break;
+                }
+                switch (weatherByCellXY[column][row]) {
+                    case CLOUD:
+                        airSpeed[cell] = (float) game.getCloudWeatherSpeedFactor();
+                        airVision[cell] = (float) game.getCloudWeatherVisionFactor();
+                        break;
+                    case RAIN:
+                        airSpeed[cell] = (float) game.getRainWeatherSpeedFactor();
+                        airVision[cell] = (float) game.getRainWeatherVisionFactor();
+                        break;
+                    default:
+                        airSpeed[cell] = (float) game.getClearWeatherSpeedFactor();
+                        airVision[cell] = (float) game.getClearWeatherVisionFactor();
+                        break;
+                }
+            }
+        }
+
+        for (VehicleType attacker : TYPES) {
+            for (VehicleType target : TYPES) {
+                damage[attacker.ordinal()][target.ordinal()] = getDamage(game, attacker, target);
+            }
+        }
+    }
+
+    /**
+     * Урон одного выстрела с учётом защиты цели: наземная или воздушная атака выбирается по цели, наземная или
+     * воздушная защита — по атакующему.
+     */
+    private static float getDamage(Game game, VehicleType attacker, VehicleType target) {
+        boolean aerialTarget = isAerial(target);
+        int attack;
+        switch (attacker) {
+            case TANK:
+                attack = aerialTarget ? game.getTankAerialDamage() : game.getTankGroundDamage();
+                break;
+            case IFV:
+                attack = aerialTarget ? game.getIfvAerialDamage() : game.getIfvGroundDamage();
+                break;
+            case HELICOPTER:
+                attack = aerialTarget ? game.getHelicopterAerialDamage() : game.getHelicopterGroundDamage();
+                break;
+            case FIGHTER:
+                attack = aerialTarget ? game.getFighterAerialDamage() : game.getFighterGroundDamage();
+                break;
+            default:
+                return 0;
+        }
+
+        boolean aerialAttacker = isAerial(attacker);
+        int defence;
+        switch (target) {
+            case TANK:
+                defence = aerialAttacker ? game.getTankAerialDefence() : game.getTankGroundDefence();
+                break;
+            case IFV:
+                defence = aerialAttacker ? game.getIfvAerialDefence() : game.getIfvGroundDefence();
+                break;
+            case HELICOPTER:
+                defence = aerialAttacker ? game.getHelicopterAerialDefence() : game.getHelicopterGroundDefence();
+                break;
+            case FIGHTER:
+                defence = aerialAttacker ? game.getFighterAerialDefence() : game.getFighterGroundDefence();
+                break;
+            default:
+                defence = aerialAttacker ? game.getArrvAerialDefence() : game.getArrvGroundDefence();
+                break;
+        }
+        return attack == 0 ? 0 : Math.max(0, attack - defence);
+    }
+
+    static boolean isAerial(VehicleType type) {
+        return type == VehicleType.FIGHTER || type == VehicleType.HELICOPTER;
+    }
+
+    /**
+     * Учитывает новую технику противника. Наша техника на карту не наносится.
+     */
+    void add(int id) {
+        if (vehicles.isAlly(id)) {
+            return;
+        }
+        ensureCapacity(id + 1);
+        enter(id, cellOf(vehicles.getX(id), vehicles.getY(id)));
+    }
+
+    void move(int id) {
+        if (id >= cellById.length || cellById[id] == NONE) {
+            return;
+        }
+        int cell = cellOf(vehicles.getX(id), vehicles.getY(id));
+        if (cellById[id] != cell) {
+            leave(id);
+            enter(id, cell);
+        } else {
+            sumX[cell] += vehicles.getX(id) - xById[id];
+            sumY[cell] += vehicles.getY(id) - yById[id];
+            xById[id] = vehicles.getX(id);
+            yById[id] = vehicles.getY(id);
+        }
+    }
+
+    void remove(int id) {
+        if (id < cellById.length && cellById[id] != NONE) {
+            leave(id);
+        }
+    }
+
+    /**
+     * @return Число клеток, в которых с последнего {@link #clearChanged} техника противника появлялась, исчезала или
+     * куда и откуда переходила.
+     */
+    int getChangedCount() {
+        return changedCount;
+    }
+
+    int getChangedCell(int index) {
+        return changedCells[index];
+    }
+
+    void clearChanged() {
+        for (int i = 0; i < changedCount; i++) {
+            changed[changedCells[i]] = false;
+        }
+        changedCount = 0;
+    }
+
+    int getColumnCount() {
+        return columns;
+    }
+
+    int getRowCount() {
+        return rows;
+    }
+
+    double getCellWidth() {
+        return cellWidth;
+    }
+
+    double getCellHeight() {
+        return cellHeight;
+    }
+
+    double getSumX(int cell) {
+        return sumX[cell];
+    }
+
+    double getSumY(int cell) {
+        return sumY[cell];
+    }
+
+    int getCell(double x, double y) {
+        return cellOf(x, y);
+    }
+
+    int getCellCount() {
+        return totals.length;
+    }
+
+    double getCellCenterX(int cell) {
+        return (cell % columns + 0.5) * cellWidth;
+    }
+
+    double getCellCenterY(int cell) {
+        return (cell / columns + 0.5) * cellHeight;
+    }
+
+    int getEnemyCount(int cell) {
+        return totals[cell];
+    }
+
+    int getEnemyCount(VehicleType type, int cell) {
+        return counts[type.ordinal()][cell];
+    }
+
+    /**
+     * @return Суммарный урон за залп, который техника противника в клетке и рядом может нанести технике типа
+     * {@code target}.
+     */
+    float getDanger(VehicleType target, int cell) {
+        return danger[target.ordinal()][cell];
+    }
+
+    /**
+     * @return Разница урона за залп, который одна наша техника типа {@code type} в клетке может нанести противнику в
+     * клетке и рядом и получить от него. Соседи учитываются с той же долей, что и в угрозе.
+     */
+    float getExchange(int type, int cell) {
+        float dealt = 0;
+        for (int enemy = 0; enemy < TYPES.length; enemy++) {
+            dealt += presence[enemy][cell] * damage[type][enemy];
+        }
+        return dealt - danger[type][cell];
+    }
+
+    float getSpeedFactor(boolean aerial, int cell) {
+        return aerial ? airSpeed[cell] : groundSpeed[cell];
+    }
+
+    float getVisionFactor(boolean aerial, int cell) {
+        return aerial ? airVision[cell] : groundVision[cell];
+    }
+
+    /**
+     * Выбирает клетку для атаки наземной армией. Клетка оценивается отношением урона, который наша армия наносит
+     * стоящей там технике, к урону, который получает от неё и соседей, умноженным на число техники в клетке и
+     * делённым на время пути с учётом проходимости клетки.
+     *
+     * @param ours  Число нашей техники по {@link VehicleType#ordinal()}.
+     * @param cells Какие клетки рассматривать.
+     * @return Номер клетки или {@code -1}, если противник не виден.
+     */
+    int findTarget(double x, double y, int[] ours, IntPredicate cells) {
+        int best = NONE;
+        double bestScore = 0;
+        for (int cell = 0; cell < totals.length; cell++) {
+            if (totals[cell] == 0 || !cells.test(cell)) {
+                continue;
+            }
+            double dealt = 0;
+            double taken = 0;
+            for (int type = 0; type < TYPES.length; type++) {
+                if (ours[type] == 0) {
+                    continue;
+                }
+                for (int enemy = 0; enemy < TYPES.length; enemy++) {
+                    dealt += ours[type] * counts[enemy][cell] * damage[type][enemy];
+                }
+                taken += ours[type] * danger[type][cell];
+            }
+            double distance = Math.hypot(getCellCenterX(cell) - x, getCellCenterY(cell) - y);
+            double time = (distance + cellWidth) / groundSpeed[cell];
+            double score = (dealt + 1) / (taken + 1) * totals[cell] / time;
+            if (score > bestScore) {
+                bestScore = score;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Выбирает клетку, к которой стоит вести наводчика: побольше техники противника в клетке и вокруг, поближе к
+     * наводчику, поменьше угрозы истребителю и не ближе {@code avoidRadius} к нашей армии.
+     *
+     * @param minEnemies Клетки, в которых вместе с соседями меньше техники противника, не рассматриваются.
+     * @param cells      Какие клетки рассматривать.
+     * @return Номер клетки или {@code -1}.
+     */
+    int findStrikeTarget(double x, double y, double avoidX, double avoidY, double avoidRadius, float durability,
+                         int minEnemies, IntPredicate cells) {
+        int best = NONE;
+        double bestScore = 0;
+        double avoidDistance = avoidRadius + Math.hypot(cellWidth, cellHeight) / 2;
+        int fighter = VehicleType.FIGHTER.ordinal();
+        for (int cell = 0; cell < totals.length; cell++) {
+            if (totals[cell] == 0 || !cells.test(cell)) {
+                continue;
+            }
+            double centerX = getCellCenterX(cell);
+            double centerY = getCellCenterY(cell);
+            if (Math.hypot(centerX - avoidX, centerY - avoidY) <= avoidDistance) {
+                continue;
+            }
+            int column = cell % columns;
+            int row = cell / columns;
+            int enemies = 0;
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                    enemies += totals[r * columns + c];
+                }
+            }
+            if (enemies < minEnemies) {
+                continue;
+            }
+            double distance = Math.hypot(centerX - x, centerY - y);
+            double score = enemies / (distance + cellWidth) / (1 + danger[fighter][cell] / durability);
+            if (score > bestScore) {
+                bestScore = score;
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    private void enter(int id, int cell) {
+        int type = vehicles.getTypeOrdinal(id);
+        counts[type][cell]++;
+        totals[cell]++;
+        cellById[id] = cell;
+        xById[id] = vehicles.getX(id);
+        yById[id] = vehicles.getY(id);
+        sumX[cell] += xById[id];
+        sumY[cell] += yById[id];
+        markChanged(cell);
+        spread(type, cell, 1);
+    }
+
+    private void leave(int id) {
+        int type = vehicles.getTypeOrdinal(id);
+        int cell = cellById[id];
+        counts[type][cell]--;
+        totals[cell]--;
+        cellById[id] = NONE;
+        sumX[cell] -= xById[id];
+        sumY[cell] -= yById[id];
+        markChanged(cell);
+        spread(type, cell, -1);
+    }
+
+    private void markChanged(int cell) {
+        if (!changed[cell]) {
+            changed[cell] = true;
+            changedCells[changedCount++] = cell;
+        }
+    }
+
+    /**
+     * Добавляет или убирает технику типа {@code attacker} и её угрозу в клетке и соседних.
+     */
+    private void spread(int attacker, int cell, int sign) {
+        int column = cell % columns;
+        int row = cell / columns;
+        for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+            for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                int neighbour = r * columns + c;
+                float share = neighbour == cell ? sign : sign * NEIGHBOUR_SHARE;
+                presence[attacker][neighbour] += share;
+                for (int target = 0; target < TYPES.length; target++) {
+                    danger[target][neighbour] += share * damage[attacker][target];
+                }
+            }
+        }
+    }
+
+    private int cellOf(double x, double y) {
+        int column = Math.min(columns - 1, Math.max(0, (int) (x / cellWidth)));
+        int row = Math.min(rows - 1, Math.max(0, (int) (y / cellHeight)));
+        return row * columns + column;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= cellById.length) {
+            return;
+        }
+
+        int oldCapacity = cellById.length;
+        cellById = Arrays.copyOf(cellById, Math.max(capacity, oldCapacity * 2));
+        Arrays.fill(cellById, oldCapacity, cellById.length, NONE);
+        xById = Arrays.copyOf(xById, cellById.length);
+        yById = Arrays.copyOf(yById, cellById.length);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Гистограмма длительностей с логарифмически-линейными корзинами в духе HdrHistogram: значения до 64 хранятся
+ * точно, дальше каждая степень двойки делится на 32 равные корзины, что даёт относительную погрешность не хуже 3%.
+ * <p>
+ * Все корзины выделяются в конструкторе, запись значения не создаёт объектов.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 32;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int SIZE = LINEAR_LIMIT + (Long.SIZE - 6) * SUB_BUCKETS;
+
+    private final long[] counts = new long[SIZE];
+    private long totalCount;
+    private long totalValue;
+    private long max;
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[index(value)]++;
+        totalCount++;
+        totalValue += value;
+        max = Math.max(max, value);
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        totalValue += other.totalValue;
+        max = Math.max(max, other.max);
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getTotalValue() {
+        return totalValue;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return totalCount == 0 ? 0 : (double) totalValue / totalCount;
+    }
+
+    /**
+     * @param percentile Перцентиль от 0 до 100.
+     * @return Верхняя граница корзины, в которую попадает перцентиль.
+     */
+    long getPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < SIZE; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, upperBound(i));
+            }
+        }
+        return max;
+    }
+
+    private static int index(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 5;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long upperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long sub = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -1,4 +1,6 @@
 import model.ActionType;
+import model.Facility;
+import model.FacilityType;
 import model.Game;
 import model.Move;
 import model.Player;
@@ -9,19 +11,10 @@ import model.VehicleUpdate;
 import model.WeatherType;
 import model.World;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Queue;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Random;
-import java.util.Set;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.IntPredicate;
 
 import static model.VehicleType.ARRV;
 import static model.VehicleType.FIGHTER;
@@ -33,9 +26,86 @@ import static model.VehicleType.TANK;
 @SuppressWarnings({"UnsecureRandomNumberGeneration", "FieldCanBeLocal", "unused", "OverlyLongMethod"})
 public final class MyStrategy implements Strategy {
     private static final int AIR = 1;
-    private final Map<Long, Vehicle> vehicleById = new HashMap<>();
-    private final Map<Long, Integer> updateTickByVehicleId = new HashMap<>();
-    private Vehicle fighter;
+    private static final int ARRV_MASK = 1 << ARRV.ordinal();
+    private static final int FIGHTER_MASK = 1 << FIGHTER.ordinal();
+    private static final int HELICOPTER_MASK = 1 << HELICOPTER.ordinal();
+    private static final int IFV_MASK = 1 << IFV.ordinal();
+    private static final int TANK_MASK = 1 << TANK.ordinal();
+    /**
+     * Скопление меньше этого считается отбившейся техникой, а не армией.
+     */
+    private static final int MIN_CLUSTER_SIZE = 10;
+    /**
+     * Удар, который наносит противнику меньше этой разницы урона, не стоит перезарядки.
+     */
+    private static final double MIN_STRIKE_SCORE = 300;
+    /**
+     * Клетки в обзоре наводчика, где не нашлось выгодного удара, столько тиков не выбираются целью подлёта.
+     */
+    private static final int STRIKE_REJECT_TICKS = 300;
+    private static final int LOOKAHEAD_TICKS = 20;
+    /**
+     * Бой по {@link BattleSearch} вместо выбора одного манёвра. Пока поиск не выигрывает у выбора, он включается
+     * только свойством.
+     */
+    private static final boolean BATTLE_SEARCH = Boolean.getBoolean("strategy.battleSearch");
+    /**
+     * Последовательности из одного манёвра для {@link ForwardModel#evaluate}.
+     */
+    private static final int[][] SINGLE_MANOEUVRES = {{0}, {1}, {2}};
+    private static final long BATTLE_SEARCH_BUDGET_NANOS = 300_000;
+    /**
+     * Поиск, начатый раньше стольких тиков назад, считается по устаревшим положениям и начинается заново.
+     */
+    private static final int BATTLE_SEARCH_MAX_AGE = 10;
+    private static final int FOCUS_TARGETS = 3;
+    /**
+     * Результат фонового анализа старше стольких тиков не используется, и решение считается синхронно.
+     */
+    private static final int MAX_ANALYSIS_AGE = 2;
+    /**
+     * На столько отрядов делится армия после построения.
+     */
+    private static final int SQUAD_COUNT = 2;
+    /**
+     * Отряд идёт на скопление один, только если превосходит его по числу техники хотя бы во столько раз; иначе он
+     * держится вместе с ведущим отрядом.
+     */
+    private static final double SOLO_ADVANTAGE = 1.2;
+    /**
+     * Идущий отряд получает новый приказ, если его цель сместилась дальше этого или с прошлого приказа прошло
+     * {@link #ADVANCE_ORDER_INTERVAL} тиков.
+     */
+    private static final double RETARGET_DISTANCE = 32;
+    private static final int ADVANCE_ORDER_INTERVAL = 60;
+    /**
+     * Проверка для прогонов на {@link Simulator}: техника, попавшая сразу в несколько отрядов, роняет стратегию.
+     */
+    private static final boolean CHECK_SQUADS = Boolean.getBoolean("strategy.checkSquads");
+    private final VehicleStore vehicles = new VehicleStore();
+    private int fighterId = -1;
+    private SpatialGrid grid;
+    private InfluenceMap influence;
+    private EnemyClusters clusters;
+    private PathPlanner paths;
+    private AirRoutePlanner airRoutes;
+    private StrikePlanner strikePlanner;
+    private int[] strikeRejectedUntil;
+    private ForwardModel forwardModel;
+    private BattleSearch battleSearch;
+    private final double[] manoeuvreScores = new double[SINGLE_MANOEUVRES.length];
+    private AnalysisWorker analysisWorker;
+    private GroupManager groups;
+    private FormationPlanner formation;
+    private Squad[] squads;
+    private int nextSquad;
+    private int squadGroup;
+    private int battleGroup;
+    private final int[] squadCounts = new int[VehicleType.values().length];
+    private final int[] groundCounts = new int[VehicleType.values().length];
+    private final SettleTracker settle = new SettleTracker(5);
+    private final TickProfiler profiler = new TickProfiler();
+    private final int[] hittableTypesByType = new int[VehicleType.values().length];
     private int orderY = 100;
     private Random random;
     private TerrainType[][] terrainTypeByCellXY;
@@ -44,29 +114,27 @@ public final class MyStrategy implements Strategy {
     private World world;
     private Game game;
     private Move move;
-    private Queue<Consumer<Move>> delayedMoves = new ArrayDeque<>();
+    private final CommandQueue delayedMoves = new CommandQueue();
     private int net = 10;
     private Point selfVector = new Point(1, 0);
-    private Point tankMass, arrvMass, helicopterMass, fighterMass, ifvMass, nearestEnemy, groundMass, airMass;
+    private final Point tankMass = new Point(0, 0), arrvMass = new Point(0, 0), helicopterMass = new Point(0, 0),
+            fighterMass = new Point(0, 0), ifvMass = new Point(0, 0), groundMass = new Point(0, 0), airMass = new Point(0, 0),
+            selfCenter = new Point(0, 0), groundTarget = new Point(0, 0);
+    private Point nearestEnemy;
     private int center = 120;
     private Point airPoint1 = new Point(orderY, orderY), airPoint2 = new Point(200, orderY);
     private Point groundPoint1 = new Point(40, orderY), groundPoint2 = new Point((int) center, (int) orderY), groundPoint3 = new Point(190, orderY);
-    private boolean orderedHorizontal = false;
-    private boolean orderedVertical = false;
-    private boolean scaled = false;
     private boolean assigned = false;
-    private boolean shifted = false;
-    private boolean horizontaled = false;
-    private boolean discaledVertical = false;
-    private boolean discaledHorizonal = false;
     private boolean start = false;
     private boolean fighterSelected = false;
     private int fighterSelectedTick = 0;
+    private int dodgedStrikeTick = -1;
     private boolean init = false;
-    private boolean battleScaling = false;
-    private boolean battleRotating = false;
-    private boolean battleDiscaling = false;
     private double factor = 1.2;
+    private final IntPredicate strikeCandidate = (cell) -> strikeRejectedUntil[cell] <= world.getTickIndex();
+    private final IntPredicate engaged = (id) -> !isSpotter(id)
+            && grid.anyWithin(false, vehicles.getX(id), vehicles.getY(id), 10.8, hittableTypesByType[vehicles.getTypeOrdinal(id)]);
+    private final IntPredicate squadEngaged = (id) -> (vehicles.getGroups(id) & (1L << squadGroup)) != 0 && engaged.test(id);
 
     /**
      * Основной метод стратегии, осуществляющий управление армией. Вызывается каждый тик.
@@ -78,47 +146,75 @@ public final class MyStrategy implements Strategy {
      */
     @Override
     public void move(Player me, World world, Game game, Move move) {
+        profiler.startTick();
         initializeStrategy(world, game);
+        profiler.start();
         initializeTick(me, world, game, move);
+        profiler.stop(TickProfiler.Section.INITIALIZE_TICK);
 
+        decide();
+
+        profiler.finishTick();
+    }
+
+    /**
+     * Принимаем решение на текущий тик. Если сторож {@link TickProfiler} сообщил об исчерпании бюджета времени,
+     * пропускаем дорогие поиск цели для ядерного удара и проверку боя и просто ведём армию к ближайшему противнику.
+     */
+    private void decide() {
+        if (fireInTheHole()) {
+            dodge();
+        }
         if (me.getRemainingActionCooldownTicks() > 0) {
+            thinkAhead();
             return;
         }
-        if (battleScaling) {
-            if (enough()) {
-                executeDelayedMove();
-                battleScaling = false;
-            }
-            return;
+        if (!profiler.isExhausted() && !delayedMoves.hasUrgent()) {
+            strike();
         }
-        if (battleRotating) {
-            if (enough()) {
-                executeDelayedMove();
-                battleRotating = false;
+        if (!delayedMoves.isEmpty() || delayedMoves.isSettling()) {
+            if (!executeDelayedMove()) {
+                thinkAhead();
             }
             return;
         }
-        if (battleDiscaling) {
-            if (enough()) {
-                executeDelayedMove();
-                battleDiscaling = false;
+
+        if (profiler.isExhausted()) {
+            ready();
+            if (start && nearestEnemy != null) {
+                selectGroup(GroupManager.ARMY);
+                moveFromTo(groundMass, nearestEnemy, game.getTankSpeed() * 0.6);
             }
+            executeDelayedMove();
             return;
         }
 
-        if (executeDelayedMove()) {
-            return;
-        }
-        if (fireInTheHole()) {
-            rotateAround(new Point(world.getOpponentPlayer().getNextNuclearStrikeX(), world.getOpponentPlayer().getNextNuclearStrikeY()), 0, 1.2);
-        }
+        profiler.start();
         airAttack();
+        profiler.stop(TickProfiler.Section.AIR_ATTACK);
+        profiler.start();
         ready();
-        if (start) {
-            if (!inBattle()) {
+        profiler.stop(TickProfiler.Section.READY);
+        if (start && squads == null) {
+            splitArmy();
+        } else if (start) {
+            profiler.start();
+            boolean commanded = commandSquads();
+            profiler.stop(TickProfiler.Section.SQUADS);
+            if (commanded) {
+                executeDelayedMove();
+                return;
+            }
+            profiler.start();
+            boolean battle = inBattle();
+            profiler.stop(TickProfiler.Section.IN_BATTLE);
+            profiler.start();
+            if (!battle) {
                 go();
+                profiler.stop(TickProfiler.Section.GO);
             } else {
-                sparta();
+                sparta(GroupManager.ARMY, groundMass.x, groundMass.y, nearestEnemy.x, nearestEnemy.y);
+                profiler.stop(TickProfiler.Section.SPARTA);
             }
         }
 
@@ -134,9 +230,33 @@ public final class MyStrategy implements Strategy {
     private void initializeStrategy(World world, Game game) {
         if (random == null) {
             random = new Random(game.getRandomSeed());
+            profiler.setTickCount(game.getTickCount());
 
             terrainTypeByCellXY = world.getTerrainByCellXY();
             weatherTypeByCellXY = world.getWeatherByCellXY();
+
+            grid = new SpatialGrid(vehicles, world.getWidth(), world.getHeight(), 16);
+            groups = new GroupManager(vehicles);
+            delayedMoves.setSelectionCheck(groups::isSelected);
+            influence = new InfluenceMap(vehicles, game, world.getWidth(), world.getHeight(),
+                    terrainTypeByCellXY, weatherTypeByCellXY);
+            clusters = new EnemyClusters(influence);
+            paths = new PathPlanner(influence);
+            airRoutes = new AirRoutePlanner(influence, game);
+            strikePlanner = new StrikePlanner(vehicles, grid, game);
+            strikeRejectedUntil = new int[influence.getCellCount()];
+            forwardModel = new ForwardModel(vehicles, influence, game);
+            battleSearch = new BattleSearch(forwardModel, LOOKAHEAD_TICKS, Integer.getInteger("strategy.searchEvaluations", 0));
+            if (Boolean.getBoolean("strategy.analysisWorker")) {
+                analysisWorker = new AnalysisWorker(strikePlanner, MIN_CLUSTER_SIZE);
+            }
+            for (VehicleType attacker : VehicleType.values()) {
+                for (VehicleType target : VehicleType.values()) {
+                    if (canHit(attacker, target)) {
+                        hittableTypesByType[attacker.ordinal()] |= 1 << target.ordinal();
+                    }
+                }
+            }
         }
     }
 
@@ -144,42 +264,61 @@ public final class MyStrategy implements Strategy {
      * Сохраняем все входные данные в полях класса для упрощения доступа к ним, а также актуализируем сведения о каждой
      * технике и времени последнего изменения её состояния.
      */
-    private void initializeTick(Player me, World world, Game game, Move move) {
+    void initializeTick(Player me, World world, Game game, Move move) {
         this.me = me;
         this.world = world;
         this.game = game;
         this.move = move;
 
+        settle.advance(world.getTickIndex());
+
+        int controlCenters = 0;
+        for (Facility facility : world.getFacilities()) {
+            if (facility.getType() == FacilityType.CONTROL_CENTER && facility.getOwnerPlayerId() == me.getId()) {
+                controlCenters++;
+            }
+        }
+        delayedMoves.setActionLimit(game.getBaseActionCount() + controlCenters * game.getAdditionalActionCountPerControlCenter(),
+                game.getActionDetectionInterval());
+
         for (Vehicle vehicle : world.getNewVehicles()) {
-            vehicleById.put(vehicle.getId(), vehicle);
-            if (vehicle.getPlayerId() == me.getId()) {
-                updateTickByVehicleId.put(vehicle.getId(), world.getTickIndex());
+            int id = (int) vehicle.getId();
+            vehicles.add(vehicle, vehicle.getPlayerId() == me.getId(), world.getTickIndex());
+            grid.add(id);
+            influence.add(id);
+            if (vehicles.isAlly(id)) {
+                settle.touch(id, world.getTickIndex());
+                delayedMoves.invalidateSelection();
             }
         }
 
         for (VehicleUpdate vehicleUpdate : world.getVehicleUpdates()) {
-            long vehicleId = vehicleUpdate.getId();
-            Vehicle vehicle = vehicleById.get(vehicleId);
-
-            if (vehicleUpdate.getDurability() == 0) {
-                vehicleById.remove(vehicleId);
-                updateTickByVehicleId.remove(vehicleId);
-            } else {
-                if (vehicleUpdate.getX() != vehicle.getX() || vehicleUpdate.getY() != vehicle.getY() || vehicleUpdate.getGroups().length != vehicle.getGroups().length) {
-                    vehicleById.put(vehicleId, new Vehicle(vehicleById.get(vehicleId), vehicleUpdate));
-                    updateTickByVehicleId.put(vehicleId, world.getTickIndex());
+            int id = (int) vehicleUpdate.getId();
+            if (vehicles.apply(vehicleUpdate, world.getTickIndex())) {
+                grid.move(id);
+                influence.move(id);
+                if (vehicles.isAlly(id)) {
+                    settle.touch(id, world.getTickIndex());
                 }
+            } else if (!vehicles.isAlive(id)) {
+                grid.remove(id);
+                influence.remove(id);
+                settle.remove(id);
             }
         }
 
 
-        tankMass = getMassOfVehicle(Ownership.ALLY, TANK);
-        helicopterMass = getMassOfVehicle(Ownership.ALLY, HELICOPTER);
-        ifvMass = getMassOfVehicle(Ownership.ALLY, IFV);
-        fighterMass = getMassOfVehicle(Ownership.ALLY, FIGHTER);
-        arrvMass = getMassOfVehicle(Ownership.ALLY, ARRV);
-        groundMass = getMassOfVehicle(Ownership.ALLY, ARRV, TANK, IFV);
-        airMass = getMassOfVehicle(Ownership.ALLY, HELICOPTER, FIGHTER);
+        if (squads != null) {
+            updateSquads();
+        }
+
+        getMassOfVehicle(tankMass, Ownership.ALLY, TANK_MASK);
+        getMassOfVehicle(helicopterMass, Ownership.ALLY, HELICOPTER_MASK);
+        getMassOfVehicle(ifvMass, Ownership.ALLY, IFV_MASK);
+        getMassOfVehicle(fighterMass, Ownership.ALLY, FIGHTER_MASK);
+        getMassOfVehicle(arrvMass, Ownership.ALLY, ARRV_MASK);
+        getMassOfVehicle(groundMass, Ownership.ALLY, ARRV_MASK | TANK_MASK | IFV_MASK);
+        getMassOfVehicle(airMass, Ownership.ALLY, HELICOPTER_MASK | FIGHTER_MASK);
 
         if (!init) {
             if (tankMass.getX() > world.getWidth() / 2) {
@@ -195,22 +334,73 @@ public final class MyStrategy implements Strategy {
             init = true;
         }
 
-        final double[] distance = {99999};
-        streamVehicles(
-                Ownership.ENEMY, null
-        ).forEach((x) ->
-        {
-            if (distance[0] > distance(arrvMass, new Point((int) x.getX(), (int) x.getY()))) {
-                distance[0] = distance(arrvMass, new Point((int) x.getX(), (int) x.getY()));
-                nearestEnemy = new Point((int) x.getX(), (int) x.getY());
+        clusters.update();
+        AnalysisWorker.Result analysis = getAnalysis();
+        int cluster = analysis != null ? -1 : clusters.nearest(arrvMass.x, arrvMass.y, MIN_CLUSTER_SIZE);
+        if (analysis != null && analysis.enemyFound) {
+            setNearestEnemy(analysis.enemyX, analysis.enemyY);
+        } else if (cluster >= 0) {
+            setNearestEnemy(clusters.getX(cluster), clusters.getY(cluster));
+        } else {
+            int enemy = grid.nearest(false, arrvMass.x, arrvMass.y, 99999, SpatialGrid.ALL_TYPES, null);
+            if (enemy >= 0) {
+                setNearestEnemy((int) vehicles.getX(enemy), (int) vehicles.getY(enemy));
             }
-        });
+        }
 
-        if (fighter != null) {
-            fighter = vehicleById.get(fighter.getId());
+        if (fighterId >= 0) {
+            if (!vehicles.isAlive(fighterId)) {
+                fighterId = -1;
+            }
         } else {
             selectFighter();
         }
+
+        if (analysisWorker != null) {
+            submitAnalysis();
+        }
+    }
+
+    /**
+     * Ближайший противник хранится в одном изменяемом объекте; {@code null} — противник ещё не виден.
+     */
+    private void setNearestEnemy(double x, double y) {
+        if (nearestEnemy == null) {
+            nearestEnemy = new Point(x, y);
+        } else {
+            nearestEnemy.set(x, y);
+        }
+    }
+
+    /**
+     * Отдаём фоновому анализу копию области вокруг наводчика и центры скоплений.
+     */
+    private void submitAnalysis() {
+        StrikePlanner.Area area = null;
+        if (fighterSelected && fighterId >= 0 && me.getRemainingNuclearStrikeCooldownTicks() == 0) {
+            area = strikePlanner.gather(fighterId, getStrikeReach()).copy();
+        }
+        double[] clusterXs = new double[clusters.size()];
+        double[] clusterYs = new double[clusters.size()];
+        int[] clusterSizes = new int[clusters.size()];
+        for (int cluster = 0; cluster < clusters.size(); cluster++) {
+            clusterXs[cluster] = clusters.getX(cluster);
+            clusterYs[cluster] = clusters.getY(cluster);
+            clusterSizes[cluster] = clusters.getCount(cluster);
+        }
+        analysisWorker.submit(new AnalysisWorker.Snapshot(world.getTickIndex(), area, arrvMass.x, arrvMass.y,
+                clusterXs, clusterYs, clusterSizes));
+    }
+
+    /**
+     * @return Свежий результат фонового анализа или {@code null}, если анализ выключен или отстаёт.
+     */
+    private AnalysisWorker.Result getAnalysis() {
+        if (analysisWorker == null) {
+            return null;
+        }
+        AnalysisWorker.Result result = analysisWorker.getLatest();
+        return result != null && result.tick >= world.getTickIndex() - MAX_ANALYSIS_AGE ? result : null;
     }
 
     /**
@@ -219,525 +409,571 @@ public final class MyStrategy implements Strategy {
      * @return Возвращает {@code true}, если и только если отложенное действие было найдено и выполнено.
      */
     private boolean executeDelayedMove() {
-        Consumer<Move> delayedMove = delayedMoves.poll();
+        profiler.start();
+        Command delayedMove = delayedMoves.poll(world.getTickIndex(), enough());
         if (delayedMove == null) {
+            profiler.stop(TickProfiler.Section.EXECUTE_DELAYED_MOVE);
             return false;
         }
 
-        delayedMove.accept(move);
+        delayedMove.apply(move, vehicles);
+        profiler.stop(TickProfiler.Section.EXECUTE_DELAYED_MOVE);
         return true;
     }
 
-    private double getSpeed(VehicleType type) {
-        switch (type) {
-            case ARRV:
-                return game.getArrvSpeed();
-            case FIGHTER:
-                return game.getFighterSpeed();
-            case HELICOPTER:
-                return game.getHelicopterSpeed();
-            case IFV:
-                return game.getIfvSpeed();
-            default:
-                return game.getTankSpeed();
+    /**
+     * Уклоняемся от ядерного удара противника: разводим армию от точки удара и сводим обратно. Блок срочный, ставится
+     * один раз на каждый удар, если под ударом есть наша техника кроме наводчика, и теряет смысл после взрыва.
+     */
+    private void dodge() {
+        Player opponent = world.getOpponentPlayer();
+        if (opponent.getNextNuclearStrikeTickIndex() == dodgedStrikeTick) {
+            return;
+        }
+        dodgedStrikeTick = opponent.getNextNuclearStrikeTickIndex();
+        double x = opponent.getNextNuclearStrikeX();
+        double y = opponent.getNextNuclearStrikeY();
+        if (grid.nearest(true, x, y, game.getTacticalNuclearStrikeRadius(), SpatialGrid.ALL_TYPES, (id) -> !isSpotter(id)) < 0) {
+            return;
+        }
+        delayedMoves.addUrgent(dodgedStrikeTick,
+                Command.selectAll(world.getWidth(), world.getHeight(), null, GroupManager.ARMY),
+                Command.scale(x, y, 1.2, 0).settling(),
+                Command.rotate(x, y, 0).settling(),
+                Command.scale(x, y, 1 / 1.2, 0).settling());
+    }
+
+    /**
+     * Наносим ядерный удар, если лучшая точка в обзоре наводчика по оценке {@link StrikePlanner} выгодна хотя бы на
+     * {@link #MIN_STRIKE_SCORE}. Проверяется каждый тик, удар ставится срочным блоком
+     * и выполняется в этот же тик, не дожидаясь очереди. Если выгодной точки нет, клетки в обзоре наводчика
+     * на {@link #STRIKE_REJECT_TICKS} тиков перестают быть целью подлёта.
+     */
+    private void strike() {
+        if (!fighterSelected || fighterId < 0 || me.getRemainingNuclearStrikeCooldownTicks() > 0) {
+            return;
+        }
+        double reach = getStrikeReach();
+        AnalysisWorker.Result analysis = getAnalysis();
+        StrikePlanner.Strike target = analysis != null ? analysis.strike : strikePlanner.plan(fighterId, reach);
+        double fighterX = vehicles.getX(fighterId);
+        double fighterY = vehicles.getY(fighterId);
+        if (target != null && target.score >= MIN_STRIKE_SCORE && Geometry.within(target.x, target.y, fighterX, fighterY, reach)) {
+            delayedMoves.addUrgent(world.getTickIndex(), Command.strike(target.x, target.y, fighterId));
+            return;
         }
+        double covered = reach - Math.hypot(influence.getCellWidth(), influence.getCellHeight()) / 2;
+        for (int cell = 0; cell < strikeRejectedUntil.length; cell++) {
+            if (Geometry.within(influence.getCellCenterX(cell), influence.getCellCenterY(cell), fighterX, fighterY, covered)) {
+                strikeRejectedUntil[cell] = world.getTickIndex() + STRIKE_REJECT_TICKS;
+            }
+        }
+    }
+
+    /**
+     * @return Дальность, на которую наводчик может указать цель с учётом погоды в его клетке, с небольшим запасом.
+     */
+    private double getStrikeReach() {
+        int cell = influence.getCell(vehicles.getX(fighterId), vehicles.getY(fighterId));
+        return game.getFighterVisionRange() * influence.getVisionFactor(true, cell) * 0.95;
     }
 
     private boolean fireInTheHole() {
         return world.getOpponentPlayer().getRemainingNuclearStrikeCooldownTicks() >= game.getBaseTacticalNuclearStrikeCooldown() - game.getTacticalNuclearStrikeDelay();
     }
 
-    private boolean enough() {
-        return streamVehicles(Ownership.ALLY).allMatch(
-                vehicle -> world.getTickIndex() - updateTickByVehicleId.get(vehicle.getId()) > 5 || (fighter != null && vehicle.getId() == fighter.getId())
-        );
+    /**
+     * @return Возвращает {@code true}, если и только если вся наша техника, кроме наводчика, стоит на месте дольше
+     * окна {@link #settle}.
+     */
+    boolean enough() {
+        int moving = settle.getMovingCount();
+        return moving == 0 || moving == 1 && settle.isMoving(fighterId);
     }
 
+    /**
+     * Построение армии перед боем; приказы выдаёт {@link FormationPlanner}, пока он не сообщит, что армия построена
+     * и остановилась.
+     */
     private void ready() {
-        if (!orderedHorizontal) {
-            double air1 = Math.abs(airPoint1.x - helicopterMass.x) + Math.abs(airPoint2.x - fighterMass.x);
-            double air2 = Math.abs(airPoint2.x - helicopterMass.x) + Math.abs(airPoint1.x - fighterMass.x);
-            double ground1 = Math.abs(groundPoint1.x - tankMass.x) / (game.getTankSpeed() * 0.6) + Math.abs(groundPoint2.x - ifvMass.x) + Math.abs(groundPoint3.x - arrvMass.x);
-            double ground2 = Math.abs(groundPoint1.x - tankMass.x) / (game.getTankSpeed() * 0.6) + Math.abs(groundPoint3.x - ifvMass.x) + Math.abs(groundPoint2.x - arrvMass.x);
-            double ground3 = Math.abs(groundPoint2.x - tankMass.x) / (game.getTankSpeed() * 0.6) + Math.abs(groundPoint1.x - ifvMass.x) + Math.abs(groundPoint3.x - arrvMass.x);
-            double ground4 = Math.abs(groundPoint2.x - tankMass.x) / (game.getTankSpeed() * 0.6) + Math.abs(groundPoint3.x - ifvMass.x) + Math.abs(groundPoint1.x - arrvMass.x);
-            double ground5 = Math.abs(groundPoint3.x - tankMass.x) / (game.getTankSpeed() * 0.6) + Math.abs(groundPoint1.x - ifvMass.x) + Math.abs(groundPoint2.x - arrvMass.x);
-            double ground6 = Math.abs(groundPoint3.x - tankMass.x) / (game.getTankSpeed() * 0.6) + Math.abs(groundPoint2.x - ifvMass.x) + Math.abs(groundPoint1.x - arrvMass.x);
-            double groundMinDist = Math.min(Math.min(Math.min(Math.min(Math.min(ground1, ground2), ground3), ground4), ground5), ground6);
-            if (air1 == Math.min(air1, air2)) {
-                selectVehicleType(HELICOPTER);
-                moveHorizontal(helicopterMass, airPoint1, game.getHelicopterSpeed() * 0.6);
-                selectVehicleType(FIGHTER);
-                moveHorizontal(fighterMass, airPoint2, game.getFighterSpeed() * 0.6);
-            } else {
-                selectVehicleType(HELICOPTER);
-                moveHorizontal(helicopterMass, airPoint2, game.getHelicopterSpeed() * 0.6);
-                selectVehicleType(FIGHTER);
-                moveHorizontal(fighterMass, airPoint1, game.getFighterSpeed() * 0.6);
-            }
-            if (ground1 == groundMinDist) {
-                horizontalGroundMove(groundPoint1, groundPoint2, groundPoint3);
-            }
-            if (ground2 == groundMinDist) {
-                horizontalGroundMove(groundPoint1, groundPoint3, groundPoint2);
-            }
-            if (ground3 == groundMinDist) {
-                horizontalGroundMove(groundPoint2, groundPoint1, groundPoint3);
-            }
-            if (ground4 == groundMinDist) {
-                horizontalGroundMove(groundPoint2, groundPoint3, groundPoint1);
-            }
-            if (ground5 == groundMinDist) {
-                horizontalGroundMove(groundPoint3, groundPoint1, groundPoint2);
-            }
-            if (ground6 == groundMinDist) {
-                horizontalGroundMove(groundPoint3, groundPoint2, groundPoint1);
-            }
-            orderedHorizontal = true;
+        if (start) {
             return;
         }
-        if (!orderedVertical && enough()) {
-            selectVehicleType(FIGHTER);
-            moveVertical(fighterMass, airPoint1, game.getFighterSpeed() * 0.6);
-            selectVehicleType(HELICOPTER);
-            moveVertical(helicopterMass, airPoint2, game.getHelicopterSpeed() * 0.6);
-            verticalGroundMove(groundPoint1, groundPoint2, groundPoint3);
-            orderedVertical = true;
-            return;
+        if (formation == null) {
+            formation = new FormationPlanner(vehicles, settle, game, world.getWidth(), world.getHeight());
+            formation.begin(new double[]{groundPoint1.x, groundPoint2.x, groundPoint3.x},
+                    new double[]{airPoint1.x, airPoint2.x}, orderY, groundPoint2.x);
+        }
+        if (formation.step(delayedMoves)) {
+            start = true;
+            fighterSelected = true;
         }
+    }
 
-        if (!scaled && enough()) {
-            for (int row : getRowList(ARRV)) {
-                selectRow(row);
-                shiftVertical(((row - orderY) * 2));
-            }
-            scaled = true;
+    private void selectFighter() {
+        if (nearestEnemy == null) {
             return;
         }
-        if (!shifted && enough()) {
-            selectVehicleType(TANK);
-            shiftVertical(5);
-            selectVehicleType(IFV);
-            shiftVertical(-5);
-            selectVehicleType(FIGHTER);
-            shiftVertical(5);
-            shifted = true;
+        fighterId = grid.nearest(true, nearestEnemy.x, nearestEnemy.y, 9999999, FIGHTER_MASK, null);
+        if (fighterId < 0) {
             return;
         }
-        if (enough() && !horizontaled) {
-            selectVehicleType(TANK);
-            moveHorizontal(tankMass, groundPoint2, game.getTankSpeed() * 0.6);
-            selectVehicleType(IFV);
-            moveHorizontal(ifvMass, groundPoint2, game.getIfvSpeed() * 0.6);
-            selectVehicleType(ARRV);
-            moveHorizontal(arrvMass, groundPoint2, game.getArrvSpeed() * 0.6);
-            selectVehicleType(HELICOPTER);
-            moveHorizontal(helicopterMass, groundPoint2, game.getHelicopterSpeed() * 0.6);
-            selectVehicleType(FIGHTER);
-            moveHorizontal(fighterMass, groundPoint2, game.getFighterSpeed() * 0.6);
-            horizontaled = true;
 
-            return;
+        delayedMoves.add(Command.selectVehicle(fighterId));
+        delayedMoves.add(Command.assign(GroupManager.SPOTTER));
+        if (groups.countOutside(GroupManager.ARMY, SpatialGrid.ALL_TYPES, fighterId) > 0) {
+            selectVehicleType(null);
+            delayedMoves.add(Command.assign(GroupManager.ARMY));
+            delayedMoves.add(Command.selectVehicle(fighterId));
         }
-
-        if (enough() && !discaledVertical) {
-            for (int row : getRowList(ARRV, TANK, IFV, HELICOPTER, FIGHTER)) {
-                selectRow(row);
-                shiftVertical(-(row - orderY) / 2);
+        delayedMoves.add(Command.dismiss(GroupManager.ARMY));
+        if (squads != null) {
+            for (Squad squad : squads) {
+                if ((vehicles.getGroups(fighterId) & (1L << squad.group)) != 0) {
+                    delayedMoves.add(Command.dismiss(squad.group));
+                }
             }
-            discaledVertical = true;
-            return;
         }
-        if (enough() && !discaledHorizonal) {
-            boolean shift = false;
-            List<Integer> columns = getColumnList(ARRV, TANK, IFV, HELICOPTER, FIGHTER);
-            Collections.sort(columns);
-            for (int column : columns) {
-                selectColumn(column);
-                moveVector(new Point(-(column - center) / 2, shift ? -5 : 0), game.getTankSpeed() * 0.6);
-                shift = !shift;
+    }
+
+    /**
+     * Делим построенную армию на {@link #SQUAD_COUNT} отрядов полосами поперёк оси X: каждая полоса выделяется
+     * рамкой без группы, ведь выделение с группой в игре берёт всю группу и рамку не смотрит. Соседние полосы делят
+     * границу, поэтому с выделения снимается предыдущий отряд, а с ним и техника на границе. Наводчик, если он в
+     * полосе, тоже снимается, и полоса получает свою группу, начиная с {@link GroupManager#FIRST_SQUAD_GROUP}.
+     * Армия построена вперемешку по типам, поэтому состав полос близок к составу всей армии.
+     */
+    private void splitArmy() {
+        squads = new Squad[SQUAD_COUNT];
+        double left = Double.MAX_VALUE;
+        double right = -Double.MAX_VALUE;
+        for (int id = 0; id < vehicles.size(); id++) {
+            if (vehicles.isAlive(id) && vehicles.isAlly(id) && (vehicles.getGroups(id) & (1L << GroupManager.ARMY)) != 0) {
+                left = Math.min(left, vehicles.getX(id));
+                right = Math.max(right, vehicles.getX(id));
             }
-            discaledHorizonal = true;
-            return;
         }
-        if (!start) {
-            if (discaledHorizonal && enough()) {
-                start = true;
-                fighterSelected = true;
+        double width = (right - left) / SQUAD_COUNT;
+        for (int i = 0; i < SQUAD_COUNT; i++) {
+            squads[i] = new Squad(GroupManager.FIRST_SQUAD_GROUP + i);
+            double from = i == 0 ? 0 : left + width * i;
+            double to = i == SQUAD_COUNT - 1 ? world.getWidth() : left + width * (i + 1);
+            delayedMoves.add(Command.select(from, 0, to, world.getHeight()));
+            if (i > 0) {
+                delayedMoves.add(Command.deselect(squads[i - 1].group));
+            }
+            if (fighterId >= 0 && vehicles.getX(fighterId) >= from && vehicles.getX(fighterId) <= to) {
+                delayedMoves.add(Command.deselect(GroupManager.SPOTTER));
             }
+            delayedMoves.add(Command.assign(squads[i].group));
         }
     }
 
-    private void selectFighter() {
-        final Vehicle[] result = {null};
-        final double[] distance = {9999999};
-        if (nearestEnemy == null) {
-            return;
+    /**
+     * Пересчитываем состав и центры отрядов по группам из {@link VehicleStore}. Отряд, в котором была техника, а
+     * теперь нет, считается уничтоженным. С {@link #CHECK_SQUADS} проверяем, что отряды не пересекаются.
+     */
+    private void updateSquads() {
+        for (Squad squad : squads) {
+            squad.clear();
         }
-        streamVehicles(Ownership.ALLY).forEach((v) ->
-        {
-            if (v.getType() == FIGHTER && getDistance(nearestEnemy, new Point(v.getX(), v.getY())) < distance[0]) {
-                distance[0] = getDistance(nearestEnemy, new Point(v.getX(), v.getY()));
-                result[0] = v;
+        for (int id = 0; id < vehicles.size(); id++) {
+            if (!vehicles.isAlive(id) || !vehicles.isAlly(id) || isSpotter(id)) {
+                continue;
+            }
+            long groupMask = vehicles.getGroups(id);
+            int memberships = 0;
+            for (Squad squad : squads) {
+                if ((groupMask & (1L << squad.group)) != 0) {
+                    squad.add(vehicles.getX(id), vehicles.getY(id), vehicles.getTypeOrdinal(id));
+                    memberships++;
+                }
+            }
+            if (CHECK_SQUADS && memberships > 1) {
+                throw new IllegalStateException("Vehicle " + id + " is in " + memberships + " squads");
+            }
+        }
+        for (Squad squad : squads) {
+            if (squad.size() > 0 && squad.getState() == Squad.State.FORMING) {
+                squad.setState(Squad.State.ADVANCE);
+                squad.setTarget(squad.getX(), squad.getY());
+            } else if (squad.size() == 0 && squad.getState() != Squad.State.FORMING
+                    && squad.getState() != Squad.State.DEAD) {
+                squad.setState(Squad.State.DEAD);
+                paths.release(squad.group);
             }
-        });
-        fighter = result[0];
-        if (fighter == null) {
-            return;
         }
+    }
 
-        delayedMoves.add((move) ->
-        {
-            move.setAction(ActionType.CLEAR_AND_SELECT);
-            move.setLeft(fighter.getX());
-            move.setRight(fighter.getX());
-            move.setTop(fighter.getY());
-            move.setBottom(fighter.getY());
-        });
-
-        delayedMoves.add((move) ->
-        {
-            move.setAction(ActionType.ASSIGN);
-            move.setGroup(1);
-        });
-        selectVehicleType(null);
-        delayedMoves.add((move) ->
-        {
-            move.setAction(ActionType.ASSIGN);
-            move.setGroup(2);
-        });
-        delayedMoves.add((move) ->
-        {
-            move.setAction(ActionType.CLEAR_AND_SELECT);
-            move.setLeft(fighter.getX());
-            move.setRight(fighter.getX());
-            move.setTop(fighter.getY());
-            move.setBottom(fighter.getY());
-        });
-
-        delayedMoves.add((move) ->
-        {
-            move.setAction(ActionType.DISMISS);
-            move.setGroup(2);
-        });
-    }
-
-    private void selectRow(int y) {
-        delayedMoves.add((move) ->
-        {
-            move.setAction(ActionType.CLEAR_AND_SELECT);
-            move.setRight(world.getWidth());
-            move.setTop(y - 1);
-            move.setBottom(y + 1);
-        });
-    }
-
-    private void selectColumn(int x) {
-        delayedMoves.add((move) ->
-        {
-            move.setAction(ActionType.CLEAR_AND_SELECT);
-            move.setBottom(world.getHeight());
-            move.setRight(x + 1);
-            move.setLeft(x - 1);
-        });
-    }
-
-    private List<Integer> getRowList(VehicleType... types) {
-        Set<Integer> result = streamVehicles(Ownership.ALLY, types).map((v) -> (int) v.getY()).collect(Collectors.toSet());
-        return new ArrayList<>(result);
-    }
-
-    private List<Integer> getColumnList(VehicleType... types) {
-        Set<Integer> result = streamVehicles(Ownership.ALLY, types).map((v) -> (int) v.getX()).collect(Collectors.toSet());
-        return new ArrayList<>(result);
-    }
-
-    private void verticalGroundMove(Point p1, Point p2, Point p3) {
-        selectVehicleType(TANK);
-        moveVertical(tankMass, p1, game.getTankSpeed() * 0.6);
-        selectVehicleType(IFV);
-        moveVertical(ifvMass, p2, game.getIfvSpeed() * 0.6);
-        selectVehicleType(ARRV);
-        moveVertical(arrvMass, p3, game.getArrvSpeed() * 0.6);
-    }
-
-    private void horizontalGroundMove(Point p1, Point p2, Point p3) {
-        selectVehicleType(TANK);
-        moveHorizontal(tankMass, p1, game.getTankSpeed() * 0.6);
-        selectVehicleType(IFV);
-        moveHorizontal(ifvMass, p2, game.getIfvSpeed() * 0.6);
-        selectVehicleType(ARRV);
-        moveHorizontal(arrvMass, p3, game.getArrvSpeed() * 0.6);
+    /**
+     * Планировщик отрядов: за свободный тик приказ получает один отряд, которому он нужен, и очередь начинается со
+     * следующего за обслуженным, так что ни один отряд не ждёт дольше, чем обходятся остальные. Приказ — выделение
+     * группы отряда и одно действие, поэтому приказы разных отрядов чередуются по тикам действий.
+     *
+     * @return Возвращает {@code false}, если живых отрядов ещё или уже нет и армией надо управлять целиком.
+     */
+    private boolean commandSquads() {
+        boolean alive = false;
+        for (int i = 0; i < squads.length; i++) {
+            int index = (nextSquad + i) % squads.length;
+            Squad squad = squads[index];
+            if (squad.getState() == Squad.State.FORMING || squad.getState() == Squad.State.DEAD) {
+                continue;
+            }
+            alive = true;
+            if (commandSquad(squad)) {
+                nextSquad = index + 1;
+                return true;
+            }
+        }
+        return alive;
     }
 
+    /**
+     * Машина состояний отряда: в бою — {@link Squad.State#FIGHT} и решение {@link BattleSearch}, иначе
+     * {@link Squad.State#ADVANCE} к своей цели.
+     *
+     * @return Возвращает {@code true}, если отряду отдан приказ.
+     */
+    private boolean commandSquad(Squad squad) {
+        squadGroup = squad.group;
+        squad.setState(vehicles.anyMatch(true, SpatialGrid.ALL_TYPES, squadEngaged) ? Squad.State.FIGHT : Squad.State.ADVANCE);
+
+        double x = squad.getX();
+        double y = squad.getY();
+        if (squad.getState() == Squad.State.FIGHT) {
+            sparta(squad.group, x, y, squad.getTargetX(), squad.getTargetY());
+            squad.ordered(world.getTickIndex());
+            return true;
+        }
 
-    private void moveFromTo(Point from, Point to, Double maxSpeed) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.MOVE);
-            move.setX(to.getX() - from.getX());
-            move.setY(to.getY() - from.getY());
-            move.setMaxSpeed(maxSpeed);
-        });
-    }
-
-    private void moveHorizontal(Point from, Point to, Double maxSpeed) {
-
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.MOVE);
-            move.setX(to.getX() - from.getX());
-            if (maxSpeed != null) {
-                if (Math.abs(to.getX() - from.getX()) > maxSpeed) {
-                    move.setMaxSpeed(maxSpeed);
-                } else {
-                    move.setMaxSpeed(Math.abs(to.getX() - from.getX()));
-                }
-            }
+        int cell = findSquadTarget(squad);
+        if (cell < 0 && nearestEnemy == null) {
+            return false;
+        }
+        double targetX = cell < 0 ? nearestEnemy.x : influence.getCellCenterX(cell);
+        double targetY = cell < 0 ? nearestEnemy.y : influence.getCellCenterY(cell);
+        double speed = getGroundSpeed(squad.counts);
+        int waypoint = speed > 0 ? paths.next(squad.group, x, y, targetX, targetY, speed, world.getTickIndex()) : -1;
+        double waypointX = waypoint < 0 ? targetX : influence.getCellCenterX(waypoint);
+        double waypointY = waypoint < 0 ? targetY : influence.getCellCenterY(waypoint);
+        if (!squad.isOrderDue(world.getTickIndex(), ADVANCE_ORDER_INTERVAL)
+                && Geometry.within(targetX, targetY, squad.getTargetX(), squad.getTargetY(), RETARGET_DISTANCE)
+                && Geometry.within(waypointX, waypointY, squad.getWaypointX(), squad.getWaypointY(), RETARGET_DISTANCE)) {
+            return false;
+        }
+        squad.setTarget(targetX, targetY);
+        squad.setWaypoint(waypointX, waypointY);
+        squad.ordered(world.getTickIndex());
+        selectGroup(squad.group);
+        moveVector(waypointX - x, waypointY - y, game.getTankSpeed() * 0.6);
+        return true;
+    }
 
-        });
+    /**
+     * @return Скорость самого медленного из наземных типов состава с множителем приказов {@code 0.6} или {@code 0},
+     * если наземной техники нет.
+     */
+    private double getGroundSpeed(int[] counts) {
+        double speed = Double.MAX_VALUE;
+        for (VehicleType type : VehicleType.values()) {
+            if (counts[type.ordinal()] > 0 && !InfluenceMap.isAerial(type)) {
+                speed = Math.min(speed, ForwardModel.getSpeed(game, type) * 0.6);
+            }
+        }
+        return speed == Double.MAX_VALUE ? 0 : speed;
     }
 
-    private void moveVertical(Point from, Point to, Double maxSpeed) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.MOVE);
-            move.setY(to.getY() - from.getY());
-            if (maxSpeed != null) {
-                move.setMaxSpeed(maxSpeed);
+    /**
+     * Цель отряда по карте влияния с учётом его наземного состава. Сначала ищется скопление, которое не занято
+     * другими отрядами и которое отряд превосходит в {@link #SOLO_ADVANTAGE} раз. Если такого нет, первый живой
+     * отряд берёт лучшее скопление вообще, а остальные идут к цели первого.
+     *
+     * @return Клетка цели или {@code -1}.
+     */
+    private int findSquadTarget(Squad squad) {
+        for (VehicleType type : VehicleType.values()) {
+            squadCounts[type.ordinal()] = type == FIGHTER || type == HELICOPTER ? 0 : squad.counts[type.ordinal()];
+        }
+        double x = squad.getX();
+        double y = squad.getY();
+        int cell = influence.findTarget(x, y, squadCounts, (c) -> inArmy(c)
+                && clusters.getCount(clusters.getClusterOfCell(c)) * SOLO_ADVANTAGE <= squad.size()
+                && !isClaimed(clusters.getClusterOfCell(c), squad));
+        if (cell >= 0) {
+            return cell;
+        }
+        Squad leader = null;
+        for (Squad other : squads) {
+            if (other.getState() == Squad.State.ADVANCE || other.getState() == Squad.State.FIGHT) {
+                leader = other;
+                break;
             }
-        });
+        }
+        if (leader != squad) {
+            return influence.getCell(leader.getTargetX(), leader.getTargetY());
+        }
+        cell = influence.findTarget(x, y, squadCounts, this::inArmy);
+        return cell >= 0 ? cell : influence.findTarget(x, y, squadCounts, (c) -> true);
     }
 
-    private void shiftVertical(int y) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.MOVE);
-            move.setY(y);
-        });
+    /**
+     * @return Возвращает {@code true}, если цель другого живого отряда лежит в этом скоплении.
+     */
+    private boolean isClaimed(int cluster, Squad squad) {
+        for (Squad other : squads) {
+            if (other != squad && other.getState() != Squad.State.DEAD && other.getState() != Squad.State.FORMING
+                    && clusters.getClusterOfCell(influence.getCell(other.getTargetX(), other.getTargetY())) == cluster) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void shiftHorizontal(int x) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.MOVE);
-            move.setX(x);
-        });
+
+    private void moveFromTo(Point from, Point to, Double maxSpeed) {
+        delayedMoves.add(Command.move(to.getX() - from.getX(), to.getY() - from.getY(), maxSpeed));
     }
 
-    private void scale(Point from, double factor, Double maxSpeed) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.SCALE);
-            move.setX(from.getX());
-            move.setY(from.getY());
-            move.setFactor(factor);
-            if (maxSpeed != null) {
-                move.setMaxSpeed(maxSpeed);
-            }
-        });
+    private void shiftHorizontal(int x) {
+        delayedMoves.add(Command.move(x, 0, 0));
     }
 
     private void scaleHorizontal(Point from, double factor) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.SCALE);
-            move.setX(from.getX());
-            move.setY(world.getHeight());
-            move.setFactor(factor);
-            move.setMaxSpeed(game.getHelicopterSpeed() * 0.6);
-        });
+        delayedMoves.add(Command.scale(from.getX(), world.getHeight(), factor, game.getHelicopterSpeed() * 0.6));
     }
 
     private void scaleVertical(Point from, double factor) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.SCALE);
-            move.setY(from.getY());
-            move.setX(world.getWidth());
-            move.setFactor(factor);
-            move.setMaxSpeed(game.getHelicopterSpeed() * 0.6);
-        });
+        delayedMoves.add(Command.scale(world.getWidth(), from.getY(), factor, game.getHelicopterSpeed() * 0.6));
     }
 
 
     private void rotateAround(Point p, double angle, double factor) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.SCALE);
-            move.setX(p.getX());
-            move.setY(p.getY());
-            move.setFactor(factor);
-            battleScaling = true;
-        });
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.ROTATE);
-            move.setX(p.getX());
-            move.setY(p.getY());
-            move.setAngle(angle);
-            battleRotating = true;
-        });
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.SCALE);
-            move.setX(p.getX());
-            move.setY(p.getY());
-            move.setFactor(1 / factor);
-            battleDiscaling = true;
-        });
-    }
-
-    private double getDistance(Point p1, Point p2) {
-        return Math.sqrt((p1.getX() - p2.getX()) * (p1.getX() - p2.getX()) + (p1.getY() - p2.getY()) * (p1.getY() - p2.getY()));
+        delayedMoves.add(Command.scale(p.getX(), p.getY(), factor, 0).settling());
+        delayedMoves.add(Command.rotate(p.getX(), p.getY(), angle).settling());
+        delayedMoves.add(Command.scale(p.getX(), p.getY(), 1 / factor, 0).settling());
     }
 
     private void selectVehicleType(VehicleType vehicleType) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.CLEAR_AND_SELECT);
-            move.setRight(world.getWidth());
-            move.setBottom(world.getHeight());
-            if (vehicleType != null) {
-                move.setVehicleType(vehicleType);
-            }
-        });
+        delayedMoves.add(Command.selectAll(world.getWidth(), world.getHeight(), vehicleType, 0));
     }
 
 
     private void selectVehicleType(VehicleType vehicleType, int group) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.CLEAR_AND_SELECT);
-            move.setRight(world.getWidth());
-            move.setBottom(world.getHeight());
-            if (vehicleType != null) {
-                move.setVehicleType(vehicleType);
-            }
-            move.setGroup(group);
-        });
+        delayedMoves.add(Command.selectAll(world.getWidth(), world.getHeight(), vehicleType, group));
     }
 
     private void select(double left, double right, double top, double bottom) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.SCALE);
-            move.setRight(right);
-            move.setLeft(left);
-            move.setBottom(bottom);
-            move.setTop(top);
-        });
+        delayedMoves.add(Command.select(left, top, right, bottom));
     }
 
-    private double getAngleToEnemy() {
-        Point attack = new Point(nearestEnemy.x - groundMass.x, nearestEnemy.y - groundMass.y);
-        return getAngle(selfVector, attack);
+    private double getAngleToEnemy(Point target) {
+        return Geometry.angle(selfVector.x, selfVector.y, target.x - groundMass.x, target.y - groundMass.y);
     }
 
-    private double getAngle(Point a, Point b) {
-        int sign = a.x * b.y - b.x * a.y > 0 ? 1 : -1;
-        return sign * Math.acos((a.x * b.x + a.y * b.y) / (Math.sqrt(a.x * a.x + a.y * a.y) * Math.sqrt(b.x * b.x + b.y * b.y)));
+    /**
+     * Бой группы с центром в {@code (x, y)}: по {@link ForwardModel} выбираем, что выгоднее на
+     * {@link #LOOKAHEAD_TICKS} тиков вперёд — прежнее сжатие к центру, сжатие помягче или сближение с противником в
+     * {@code (enemyX, enemyY)}. При равных оценках остаётся прежнее сжатие.
+     * <p>
+     * С {@link #BATTLE_SEARCH} берём первое действие лучшей последовательности из {@link BattleSearch}. Если поиск не
+     * шёл в свободные тики, шёл для другой группы или устарел, начинаем его сейчас и даём ему один квант времени.
+     */
+    private void sparta(int group, double x, double y, double enemyX, double enemyY) {
+        if (!BATTLE_SEARCH) {
+            Command[] manoeuvres = {
+                    Command.scale(x, y, 0.2, 0),
+                    Command.scale(x, y, 0.6, 0),
+                    Command.move(enemyX - x, enemyY - y, game.getTankSpeed() * 0.6),
+            };
+            forwardModel.capture(group);
+            forwardModel.evaluate(manoeuvres, SINGLE_MANOEUVRES, 0, manoeuvres.length, 1, LOOKAHEAD_TICKS,
+                    manoeuvreScores);
+            int best = 0;
+            for (int i = 1; i < manoeuvres.length; i++) {
+                if (manoeuvreScores[i] > manoeuvreScores[best]) {
+                    best = i;
+                }
+            }
+            selectGroup(group);
+            delayedMoves.add(manoeuvres[best]);
+            return;
+        }
+        if (!battleSearch.isRunning() || battleGroup != group
+                || battleSearch.getAge(world.getTickIndex()) > BATTLE_SEARCH_MAX_AGE) {
+            beginBattleSearch(group, x, y, enemyX, enemyY);
+        }
+        battleSearch.think(BATTLE_SEARCH_BUDGET_NANOS);
+        Command best = battleSearch.getBest();
+        battleSearch.reset();
+        selectGroup(group);
+        delayedMoves.add(best);
     }
 
-    private Point turnVector(Point v, double ang) {
-        return new Point((v.x * Math.cos(ang) - v.y * Math.sin(ang)), (v.x * Math.sin(ang) + v.y * Math.cos(ang)));
+    /**
+     * Продолжаем поиск боевого решения в тик, когда действовать всё равно нельзя: для армии целиком или, после
+     * разделения, для отряда в бою, которому планировщик отдаст приказ раньше других.
+     */
+    private void thinkAhead() {
+        if (!BATTLE_SEARCH || !start || profiler.isExhausted() || nearestEnemy == null) {
+            return;
+        }
+        profiler.start();
+        if (!battleSearch.isRunning()) {
+            if (squads == null) {
+                if (inBattle()) {
+                    beginBattleSearch(GroupManager.ARMY, groundMass.x, groundMass.y, nearestEnemy.x, nearestEnemy.y);
+                }
+            } else {
+                for (int i = 0; i < squads.length; i++) {
+                    Squad squad = squads[(nextSquad + i) % squads.length];
+                    if (squad.getState() == Squad.State.FIGHT) {
+                        beginBattleSearch(squad.group, squad.getX(), squad.getY(), squad.getTargetX(), squad.getTargetY());
+                        break;
+                    }
+                }
+            }
+        }
+        if (battleSearch.isRunning()) {
+            battleSearch.think(BATTLE_SEARCH_BUDGET_NANOS);
+        }
+        profiler.stop(TickProfiler.Section.BATTLE_SEARCH);
     }
 
-    private double distance(Point p1, Point p2) {
-        return Math.sqrt((p1.getX() - p2.getX()) * (p1.getX() - p2.getX()) + (p1.getY() - p2.getY()) * (p1.getY() - p2.getY()));
-    }
+    /**
+     * Действия боя группы с центром в {@code (x, y)}: прежнее сжатие к центру (по умолчанию), сжатие помягче и
+     * сближение с каждым из {@link #FOCUS_TARGETS} ближайших скоплений или, если их нет, с противником в
+     * {@code (enemyX, enemyY)}.
+     */
+    private void beginBattleSearch(int group, double x, double y, double enemyX, double enemyY) {
+        double speed = game.getTankSpeed() * 0.6;
+        Command[] actions = new Command[2 + FOCUS_TARGETS];
+        int count = 0;
+        actions[count++] = Command.scale(x, y, 0.2, 0);
+        actions[count++] = Command.scale(x, y, 0.6, 0);
+
+        Integer[] order = new Integer[clusters.size()];
+        for (int cluster = 0; cluster < order.length; cluster++) {
+            order[cluster] = cluster;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((cluster) ->
+                Geometry.distanceSquared(clusters.getX(cluster), clusters.getY(cluster), x, y)));
+        int targets = 0;
+        for (int i = 0; i < order.length && targets < FOCUS_TARGETS; i++) {
+            int cluster = order[i];
+            if (clusters.getCount(cluster) >= MIN_CLUSTER_SIZE) {
+                actions[count++] = Command.move(clusters.getX(cluster) - x, clusters.getY(cluster) - y, speed);
+                targets++;
+            }
+        }
+        if (targets == 0) {
+            actions[count++] = Command.move(enemyX - x, enemyY - y, speed);
+        }
 
-    private void sparta() {
-        selectGroup(2);
-        scale(groundMass, 0.2, null);
+        forwardModel.capture(group);
+        battleGroup = group;
+        battleSearch.begin(world.getTickIndex(), Arrays.copyOf(actions, count));
     }
 
-    private void moveVector(Point p, double maxSpeed) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.MOVE);
-            move.setX(p.x);
-            move.setY(p.y);
-            move.setMaxSpeed(maxSpeed);
-        });
+    private void moveVector(double x, double y, double maxSpeed) {
+        delayedMoves.add(Command.move(x, y, maxSpeed));
     }
 
     private void selectGroup(int group) {
-        delayedMoves.add(move ->
-        {
-            move.setAction(ActionType.CLEAR_AND_SELECT);
-            move.setRight(world.getWidth());
-            move.setBottom(world.getHeight());
-            move.setGroup(group);
-        });
+        delayedMoves.add(Command.selectAll(world.getWidth(), world.getHeight(), null, group));
     }
 
     /**
      * Основная логика нашей стратегии.
      */
     private void go() {
-        selectGroup(2);
-        double angleToTurn = getAngleToEnemy();
-        if (Math.abs(angleToTurn) > Math.PI / 18 && distance(groundMass, nearestEnemy) > 50) {
+        selectGroup(GroupManager.ARMY);
+        Point target = getGroundTarget();
+        double angleToTurn = getAngleToEnemy(target);
+        if (Math.abs(angleToTurn) > Math.PI / 18 && !Geometry.within(groundMass.x, groundMass.y, target.x, target.y, 50)) {
             rotateAround(groundMass, angleToTurn, factor);
-            selfVector = turnVector(selfVector, angleToTurn);
+            selfVector.rotate(angleToTurn);
             return;
         }
-        Point selfCenter = getMassOfVehicle(Ownership.ALLY);
-        moveFromTo(selfCenter, nearestEnemy, game.getTankSpeed() * 0.6);
+        getMassOfVehicle(selfCenter, Ownership.ALLY, SpatialGrid.ALL_TYPES);
+        int waypoint = paths.next(GroupManager.ARMY, selfCenter.x, selfCenter.y, target.x, target.y,
+                game.getTankSpeed() * 0.6, world.getTickIndex());
+        if (waypoint >= 0) {
+            target = groundTarget.set(influence.getCellCenterX(waypoint), influence.getCellCenterY(waypoint));
+        }
+        moveFromTo(selfCenter, target, game.getTankSpeed() * 0.6);
     }
 
+    /**
+     * Цель наземной армии по карте влияния: клетка, где наш состав выгоднее всего разменивается с противником с
+     * учётом пути. Рассматриваются только клетки скоплений не меньше {@link #MIN_CLUSTER_SIZE}, чтобы одиночная
+     * техника не уводила армию; если таких не осталось — любые. Если клетка не нашлась, идём к ближайшему противнику.
+     */
+    private Point getGroundTarget() {
+        for (VehicleType type : VehicleType.values()) {
+            groundCounts[type.ordinal()] = type == FIGHTER || type == HELICOPTER ? 0 : vehicles.count(true, 1 << type.ordinal());
+        }
+        int cell = influence.findTarget(groundMass.x, groundMass.y, groundCounts, this::inArmy);
+        if (cell < 0) {
+            cell = influence.findTarget(groundMass.x, groundMass.y, groundCounts, (c) -> true);
+        }
+        if (cell < 0) {
+            return nearestEnemy;
+        }
+        return groundTarget.set(influence.getCellCenterX(cell), influence.getCellCenterY(cell));
+    }
+
+    private boolean inArmy(int cell) {
+        int cluster = clusters.getClusterOfCell(cell);
+        return cluster >= 0 && clusters.getCount(cluster) >= MIN_CLUSTER_SIZE;
+    }
+
+    /**
+     * Ведём наводчика к клетке, которую выбирает {@link InfluenceMap#findStrikeTarget}: там хватает техники
+     * противника, чтобы удар мог набрать {@link #MIN_STRIKE_SCORE}, и {@link #strike()} недавно не отверг её. Над
+     * клеткой наводчик ждёт, пока {@link #strike()} ударит или отвергнет её, а после удара улетает, если не успеет
+     * вернуться к концу перезарядки.
+     */
     private void airAttack() {
-        if (fighterSelected && fighter != null) {
-            selectGroup(1);
-            final double[] minDist = {99999};
-            final Point[] nuclearPoint = new Point[1];
-            streamVehicles(Ownership.ENEMY).forEach((v) ->
-            {
-                Point p = new Point(v.getX(), v.getY());
-                if (minDist[0] > distance(p, new Point(fighter.getX(), fighter.getY()))
-                        && distance(p, groundMass) > game.getTacticalNuclearStrikeRadius()) {
-                    minDist[0] = distance(p, new Point(fighter.getX(), fighter.getY()));
-                    nuclearPoint[0] = new Point(v.getX(), v.getY());
-                }
-            });
-            if (nuclearPoint[0] == null) {
+        if (fighterSelected && fighterId >= 0) {
+            double fighterX = vehicles.getX(fighterId);
+            double fighterY = vehicles.getY(fighterId);
+            int minEnemies = (int) Math.ceil(MIN_STRIKE_SCORE / game.getMaxTacticalNuclearStrikeDamage());
+            int cell = influence.findStrikeTarget(fighterX, fighterY, groundMass.x, groundMass.y,
+                    game.getTacticalNuclearStrikeRadius(), game.getFighterDurability(), minEnemies, strikeCandidate);
+            if (cell < 0) {
                 return;
             }
-            double dist = distance(new Point(fighter.getX(), fighter.getY()), nuclearPoint[0]);
-            if (dist < game.getFighterVisionRange() * 0.37 && me.getRemainingNuclearStrikeCooldownTicks() == 0) {
-
-                delayedMoves.add(move ->
-                {
-                    move.setAction(ActionType.TACTICAL_NUCLEAR_STRIKE);
-                    move.setX(nuclearPoint[0].getX());
-                    move.setY(nuclearPoint[0].getY());
-                    move.setVehicleId(fighter.getId());
-                });
+            double targetX = influence.getCellCenterX(cell);
+            double targetY = influence.getCellCenterY(cell);
+            double strikeDistance = game.getFighterVisionRange() * 0.37;
+            if (Geometry.within(fighterX, fighterY, targetX, targetY, strikeDistance) && me.getRemainingNuclearStrikeCooldownTicks() == 0) {
                 return;
             }
+            double dist = Geometry.distance(fighterX, fighterY, targetX, targetY);
+            selectGroup(GroupManager.SPOTTER);
             if (dist / (game.getFighterSpeed() * 0.8) > me.getRemainingNuclearStrikeCooldownTicks()) {
-                moveFromTo(new Point(fighter.getX(), fighter.getY()), new Point(fighter.getX() + (nuclearPoint[0].getX() - fighter.getX()) / dist * (dist - game.getFighterVisionRange() * 0.36 - 1), fighter.getY() + (nuclearPoint[0].getY() - fighter.getY()) / dist * (dist - game.getFighterVisionRange() * 0.36 - 1)), game.getFighterSpeed());
+                int waypoint = airRoutes.next(FIGHTER, fighterX, fighterY, targetX, targetY, game.getFighterVisionRange());
+                if (waypoint >= 0) {
+                    moveVector(influence.getCellCenterX(waypoint) - fighterX, influence.getCellCenterY(waypoint) - fighterY, game.getFighterSpeed());
+                } else {
+                    double approach = (dist - game.getFighterVisionRange() * 0.36 - 1) / dist;
+                    moveVector((targetX - fighterX) * approach, (targetY - fighterY) * approach, game.getFighterSpeed());
+                }
             } else {
-                moveFromTo(new Point(fighter.getX(), fighter.getY()), new Point(0, world.getHeight()), game.getFighterSpeed());
+                int waypoint = airRoutes.next(FIGHTER, fighterX, fighterY, 0, world.getHeight(), 0);
+                if (waypoint >= 0) {
+                    moveVector(influence.getCellCenterX(waypoint) - fighterX, influence.getCellCenterY(waypoint) - fighterY, game.getFighterSpeed());
+                } else {
+                    moveVector(-fighterX, world.getHeight() - fighterY, game.getFighterSpeed());
+                }
             }
         }
 
     }
 
-    private boolean inBattle() {
-        final double[] distance = {99999};
-        streamVehicles(Ownership.ALLY, null).forEach((x) ->
-                streamVehicles(Ownership.ENEMY, null).forEach((y) ->
-                {
-                    if (canHit(x.getType(), y.getType())) {
-                        distance[0] = Math.min(distance[0], Math.sqrt((x.getX() - y.getX()) * (x.getX() - y.getX()) + (x.getY() - y.getY()) * (x.getY() - y.getY())));
-                    }
-                }));
-        if (distance[0] < 10.8) {
-            return true;
-        }
-        return false;
+    boolean inBattle() {
+        return vehicles.anyMatch(true, SpatialGrid.ALL_TYPES, engaged);
     }
 
     private boolean canHit(VehicleType t1, VehicleType t2) {
@@ -754,62 +990,42 @@ public final class MyStrategy implements Strategy {
         }
     }
 
-    private Point getMassOfVehicle(Ownership ownership, VehicleType... vehicleTypes) {
-        double x = streamVehicles(
-                ownership, vehicleTypes
-        ).mapToDouble(Vehicle::getX).average().orElse(0d);
-
-        double y = streamVehicles(
-                ownership, vehicleTypes
-        ).mapToDouble(Vehicle::getY).average().orElse(0d);
-        return new Point((int) x, (int) y);
-    }
-
-    private Stream<Vehicle> streamVehicles(Ownership ownership, VehicleType... vehicleTypes) {
-        Predicate<Vehicle> predicate = (vehicle) ->
-        {
-            if (ownership == Ownership.ALLY && vehicle.getPlayerId() != me.getId()) {
-                return false;
-            }
-            if (ownership == Ownership.ENEMY && vehicle.getPlayerId() == me.getId()) {
-                return false;
-            }
-            if (vehicleTypes != null && vehicleTypes.length > 0 && vehicleTypes[0] != null) {
-                boolean o = false;
-                for (VehicleType t : vehicleTypes) {
-                    if (vehicle.getType() == t) {
-                        o = true;
-                    }
-                }
-                if (!o) {
-                    return false;
-                }
-            }
-            if (fighter != null && fighterSelected) {
-                return vehicle.getId() != fighter.getId();
-            }
-            return true;
-        };
-
-        ArrayList<Vehicle> list = new ArrayList<>();
-        for (Vehicle vehicle : vehicleById.values()) {
-            if (predicate.test(vehicle)) {
-                list.add(vehicle);
+    /**
+     * Записывает в {@code mass} центр масс техники стороны указанных типов, округлённый вниз до целых.
+     */
+    Point getMassOfVehicle(Point mass, Ownership ownership, int typeMask) {
+        int count = 0;
+        double x = 0;
+        double y = 0;
+        if (ownership != Ownership.ENEMY) {
+            count += vehicles.count(true, typeMask);
+            x += vehicles.sumX(true, typeMask);
+            y += vehicles.sumY(true, typeMask);
+            if (fighterSelected && vehicles.isAlive(fighterId) && (typeMask & (1 << FIGHTER.ordinal())) != 0) {
+                count--;
+                x -= vehicles.getX(fighterId);
+                y -= vehicles.getY(fighterId);
             }
         }
-
-        return list.stream();
-    }
-
-    private Stream<Vehicle> streamVehicles(Ownership ownership) {
-        return streamVehicles(ownership, null);
+        if (ownership != Ownership.ALLY) {
+            count += vehicles.count(false, typeMask);
+            x += vehicles.sumX(false, typeMask);
+            y += vehicles.sumY(false, typeMask);
+        }
+        if (count == 0) {
+            return mass.set(0, 0);
+        }
+        return mass.set((int) (x / count), (int) (y / count));
     }
 
-    private Stream<Vehicle> streamVehicles() {
-        return streamVehicles(Ownership.ANY);
+    /**
+     * Отделённый от армии истребитель-наводчик не участвует в манёврах и подсчётах.
+     */
+    private boolean isSpotter(int id) {
+        return fighterSelected && id == fighterId;
     }
 
-    private enum Ownership {
+    enum Ownership {
         ANY,
 
         ALLY,
@@ -817,7 +1033,7 @@ public final class MyStrategy implements Strategy {
         ENEMY
     }
 
-    private class Point {
+    static final class Point {
         public double x, y;
 
         Point(double xT, double yT) {
@@ -825,6 +1041,19 @@ public final class MyStrategy implements Strategy {
             y = yT;
         }
 
+        Point set(double xT, double yT) {
+            x = xT;
+            y = yT;
+            return this;
+        }
+
+        /**
+         * Поворачивает вектор на месте.
+         */
+        Point rotate(double angle) {
+            return set(Geometry.rotateX(x, y, angle), Geometry.rotateY(x, y, angle));
+        }
+
         double getX() {
             return x;
         }
@@ -0,0 +1,280 @@
+/**
+ * Поиск пути группы по клеткам местности {@link InfluenceMap}.
+ * <p>
+ * Путь ищется алгоритмом A* по восьми соседям. Стоимость шага — время пути между центрами клеток со скоростью
+ * группы, умноженной на средний коэффициент местности двух клеток. Эвристика — время по прямой на равнине, она не
+ * переоценивает стоимость.
+ * <p>
+ * Найденный путь записывается в таблицу резервирования: клетка занята группой в окне тиков вокруг расчётного
+ * времени прохода. Клетку могут занимать сразу несколько групп, у каждой своё окно. Клетка, занятая любой другой
+ * группой в пересекающееся окно, стоит дороже на {@link #RESERVED_PENALTY}, поэтому одновременно идущие группы
+ * расходятся. Запрет не жёсткий, иначе две группы не смогли бы идти к одной цели.
+ * <p>
+ * Путь кэшируется по группе. Он пересчитывается, только если сменилась клетка цели, группа ушла с пути или
+ * изменились пути других групп, то есть их резервы. Если новый путь проходит по тем же клеткам, резервы группы
+ * считаются прежними, и пересчёт не расходится по остальным группам.
+ * <p>
+ * Приказ ведёт не в соседнюю клетку, а в самую дальнюю клетку пути, до которой прямая не проходит по местности
+ * хуже, чем сам путь на этом участке.
+ */
+final class PathPlanner {
+    /**
+     * Наибольший номер группы плюс один: группы задаются битами {@code long}.
+     */
+    private static final int OWNER_COUNT = 64;
+    private static final double RESERVED_PENALTY = 2;
+    /**
+     * Запас в тиках вокруг расчётного времени прохода клетки.
+     */
+    private static final int RESERVATION_SLACK = 30;
+
+    private final InfluenceMap map;
+    private final int columns;
+    private final int rows;
+    private final int cellCount;
+    private final double cellSize;
+
+    private final double[] costs;
+    private final int[] parents;
+    private final int[] stamps;
+    private final boolean[] closed;
+    private final CellHeap heap;
+    private int stamp;
+
+    /**
+     * Маска групп, занявших клетку; окна занятия хранятся в путях групп.
+     */
+    private final long[] reservedBy;
+    private final Route[] routes = new Route[OWNER_COUNT];
+
+    /**
+     * Кэшированный путь группы.
+     */
+    private static final class Route {
+        final int[] reservedFrom;
+        final int[] reservedTo;
+        int[] cells = new int[0];
+        int length;
+        int goal = -1;
+        /**
+         * Сумма версий чужих путей на момент поиска.
+         */
+        int blockingVersion;
+        int version;
+
+        Route(int cellCount) {
+            reservedFrom = new int[cellCount];
+            reservedTo = new int[cellCount];
+        }
+    }
+
+    PathPlanner(InfluenceMap map) {
+        this.map = map;
+        this.columns = map.getColumnCount();
+        this.rows = map.getRowCount();
+        this.cellCount = map.getCellCount();
+        this.cellSize = Math.min(map.getCellWidth(), map.getCellHeight());
+        this.costs = new double[cellCount];
+        this.parents = new int[cellCount];
+        this.stamps = new int[cellCount];
+        this.closed = new boolean[cellCount];
+        this.heap = new CellHeap(cellCount * 8);
+        this.reservedBy = new long[cellCount];
+    }
+
+    /**
+     * Ближайшая точка, в которую стоит вести группу {@code owner} из {@code (x, y)} к {@code (targetX, targetY)}.
+     *
+     * @param speed Скорость наземной группы на равнине.
+     * @param tick  Текущий тик, от которого считаются окна резервов.
+     * @return Клетка-ориентир или {@code -1}, если идти надо прямо к цели.
+     */
+    int next(int owner, double x, double y, double targetX, double targetY, double speed, int tick) {
+        int start = map.getCell(x, y);
+        int goal = map.getCell(targetX, targetY);
+        if (start == goal) {
+            return -1;
+        }
+        Route route = routes[owner];
+        if (route == null) {
+            route = routes[owner] = new Route(cellCount);
+        }
+        int blocking = getBlockingVersion(owner);
+        int from = indexOf(route, start);
+        if (route.goal != goal || route.blockingVersion != blocking || from < 0) {
+            if (!search(owner, start, goal, speed, tick)) {
+                return -1;
+            }
+            store(owner, route, goal, speed, tick);
+            route.blockingVersion = blocking;
+            from = 0;
+        }
+
+        int waypoint = from;
+        float worst = Float.MAX_VALUE;
+        for (int i = from + 1; i < route.length; i++) {
+            worst = Math.min(worst, map.getSpeedFactor(false, route.cells[i]));
+            if (!isStraight(x, y, route.cells[i], worst)) {
+                break;
+            }
+            waypoint = i;
+        }
+        int cell = route.cells[Math.max(waypoint, Math.min(from + 1, route.length - 1))];
+        return cell == goal ? -1 : cell;
+    }
+
+    /**
+     * Снимает путь и резервы группы, например уничтоженной.
+     */
+    void release(int owner) {
+        Route route = routes[owner];
+        if (route == null) {
+            return;
+        }
+        unreserve(owner, route);
+        route.length = 0;
+        route.goal = -1;
+        route.version++;
+    }
+
+    private boolean search(int owner, int start, int goal, double speed, int tick) {
+        stamp++;
+        heap.clear();
+        visit(start, 0, -1);
+        heap.push(start, heuristic(start, goal, speed));
+        while (!heap.isEmpty()) {
+            int cell = heap.pop();
+            if (closed[cell]) {
+                continue;
+            }
+            closed[cell] = true;
+            if (cell == goal) {
+                return true;
+            }
+            int column = cell % columns;
+            int row = cell / columns;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int nextColumn = column + dx;
+                    int nextRow = row + dy;
+                    if ((dx | dy) == 0 || nextColumn < 0 || nextRow < 0 || nextColumn >= columns || nextRow >= rows) {
+                        continue;
+                    }
+                    int next = nextRow * columns + nextColumn;
+                    if (stamps[next] == stamp && closed[next]) {
+                        continue;
+                    }
+                    double factor = (map.getSpeedFactor(false, cell) + map.getSpeedFactor(false, next)) / 2;
+                    double step = Math.hypot(dx, dy) * cellSize / (speed * factor);
+                    if (isReservedByOther(owner, next, tick + (int) (costs[cell] + step))) {
+                        step *= RESERVED_PENALTY;
+                    }
+                    double cost = costs[cell] + step;
+                    if (stamps[next] != stamp || cost < costs[next]) {
+                        visit(next, cost, cell);
+                        heap.push(next, cost + heuristic(next, goal, speed));
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void visit(int cell, double cost, int parent) {
+        if (stamps[cell] != stamp) {
+            stamps[cell] = stamp;
+            closed[cell] = false;
+        }
+        costs[cell] = cost;
+        parents[cell] = parent;
+    }
+
+    private double heuristic(int cell, int goal, double speed) {
+        return Math.hypot(map.getCellCenterX(cell) - map.getCellCenterX(goal),
+                map.getCellCenterY(cell) - map.getCellCenterY(goal)) / speed;
+    }
+
+    /**
+     * Переписывает путь группы из родителей последнего поиска на месте прежнего и обновляет её резервы. Версия пути
+     * меняется, только если изменились клетки.
+     */
+    private void store(int owner, Route route, int goal, double speed, int tick) {
+        int length = 0;
+        for (int cell = goal; cell >= 0; cell = parents[cell]) {
+            length++;
+        }
+
+        unreserve(owner, route);
+        boolean same = route.length == length;
+        if (route.cells.length < length) {
+            route.cells = new int[length];
+        }
+        for (int cell = goal, i = length - 1; cell >= 0; cell = parents[cell], i--) {
+            same &= route.cells[i] == cell;
+            route.cells[i] = cell;
+        }
+        route.length = length;
+        route.goal = goal;
+        for (int i = 0; i < length; i++) {
+            int cell = route.cells[i];
+            reservedBy[cell] |= 1L << owner;
+            route.reservedFrom[cell] = tick + (int) costs[cell] - RESERVATION_SLACK;
+            route.reservedTo[cell] = tick + (int) costs[cell] + (int) (cellSize / speed) + RESERVATION_SLACK;
+        }
+        if (!same) {
+            route.version++;
+        }
+    }
+
+    private void unreserve(int owner, Route route) {
+        for (int i = 0; i < route.length; i++) {
+            reservedBy[route.cells[i]] &= ~(1L << owner);
+        }
+    }
+
+    private boolean isReservedByOther(int owner, int cell, int tick) {
+        for (long others = reservedBy[cell] & ~(1L << owner); others != 0; others &= others - 1) {
+            Route route = routes[Long.numberOfTrailingZeros(others)];
+            if (tick >= route.reservedFrom[cell] && tick <= route.reservedTo[cell]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getBlockingVersion(int owner) {
+        int version = 0;
+        for (int other = 0; other < OWNER_COUNT; other++) {
+            if (other != owner && routes[other] != null) {
+                version += routes[other].version;
+            }
+        }
+        return version;
+    }
+
+    private static int indexOf(Route route, int cell) {
+        for (int i = 0; i < route.length; i++) {
+            if (route.cells[i] == cell) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Возвращает {@code true}, если прямая от {@code (x, y)} до центра клетки не проходит по клеткам хуже
+     * {@code worst}. Прямая проверяется шагами в полклетки.
+     */
+    private boolean isStraight(double x, double y, int cell, float worst) {
+        double toX = map.getCellCenterX(cell);
+        double toY = map.getCellCenterY(cell);
+        int steps = (int) Math.ceil(Math.hypot(toX - x, toY - y) / (cellSize / 2));
+        for (int i = 1; i <= steps; i++) {
+            int crossed = map.getCell(x + (toX - x) * i / steps, y + (toY - y) * i / steps);
+            if (map.getSpeedFactor(false, crossed) < worst) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
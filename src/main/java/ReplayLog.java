@@ -0,0 +1,555 @@
+import model.ActionType;
+import model.Facility;
+import model.FacilityType;
+import model.Game;
+import model.Move;
+import model.Player;
+import model.TerrainType;
+import model.Vehicle;
+import model.VehicleType;
+import model.VehicleUpdate;
+import model.WeatherType;
+import model.World;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Двоичный журнал игры: {@link Game}, затем для каждого тика полученный {@link PlayerContext} и отправленный
+ * {@link Move}. Пишется из {@link Runner}, если задано свойство {@code strategy.record} с путём к файлу.
+ * <p>
+ * Файл отображается в память кусками по {@link #CHUNK_SIZE} байт, запись идёт прямо в отображённый буфер без
+ * промежуточных копий. Файл не обрезается по концу данных: хвост куска заполнен нулями, а нулевой тег записи означает
+ * конец журнала.
+ * <p>
+ * {@link #main} проигрывает журнал на свежем экземпляре {@link MyStrategy} без сервера и сверяет ходы с записанными.
+ * Аргументы: путь к журналу и число повторов (по умолчанию 1).
+ */
+final class ReplayLog {
+    static final int CHUNK_SIZE = 16 << 20;
+
+    private static final int MAGIC = 0x52414943;
+    private static final int VERSION = 1;
+
+    private static final byte END = 0;
+    private static final byte CONTEXT = 1;
+    private static final byte MOVE = 2;
+
+    /**
+     * Запас под все поля {@link Game}, их около сотни.
+     */
+    private static final int GAME_SIZE = 1024;
+    private static final int CONTEXT_SIZE = 8 + 1 + 1 + 4 + 4 + 4 + 8 + 4 + 8 + 8 + 4 + 4 + 8 + 8 + 4;
+    private static final int PLAYER_SIZE = 8 + 1 + 1 + 4 + 4 + 4 + 8 + 4 + 8 + 8;
+    private static final int VEHICLE_SIZE = 8 + 8 + 8 + 8 + 8 + 4 + 4 + 8 * 7 + 4 * 6 + 1 + 1 + 1;
+    private static final int UPDATE_SIZE = 8 + 8 + 8 + 4 + 4 + 1;
+    private static final int FACILITY_SIZE = 8 + 1 + 8 + 8 + 8 + 8 + 1 + 4;
+    private static final int MOVE_SIZE = 1 + 4 + 8 * 10 + 1 + 8 + 8;
+
+    private static final ActionType[] ACTION_TYPES = ActionType.values();
+    private static final VehicleType[] VEHICLE_TYPES = VehicleType.values();
+    private static final FacilityType[] FACILITY_TYPES = FacilityType.values();
+    private static final TerrainType[] TERRAIN_TYPES = TerrainType.values();
+    private static final WeatherType[] WEATHER_TYPES = WeatherType.values();
+
+    private ReplayLog() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args[0]);
+        int repeats = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        for (int i = 0; i < repeats; i++) {
+            long start = System.nanoTime();
+            int ticks = 0;
+            int mismatches = 0;
+            try (Reader reader = new Reader(path)) {
+                Game game = reader.readGame();
+                Strategy strategy = new MyStrategy();
+
+                PlayerContext playerContext;
+                while ((playerContext = reader.readContext()) != null) {
+                    Move move = new Move();
+                    strategy.move(playerContext.getPlayer(), playerContext.getWorld(), game, move);
+                    Move recorded = reader.readMove();
+                    if (recorded != null && !same(move, recorded)) {
+                        mismatches++;
+                    }
+                    ticks++;
+                }
+            }
+            System.out.println("Ticks: " + ticks + ", mismatched moves: " + mismatches
+                    + ", elapsed: " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    /**
+     * Ходы сравниваются целиком: стратегия детерминирована seed'ом игры, расхождение означает изменение поведения.
+     * Исключения зависят от времени: сработавший сторож {@link TickProfiler}, фоновый анализ
+     * ({@code strategy.analysisWorker}) и квант {@link BattleSearch} по времени, если поиск включён свойством
+     * {@code strategy.battleSearch}. Поэтому журнал с поиском пишется и сверяется со свойством
+     * {@code strategy.searchEvaluations}, задающим квант поиска числом оценок.
+     */
+    static boolean same(Move a, Move b) {
+        return a.getAction() == b.getAction() && a.getGroup() == b.getGroup()
+                && a.getLeft() == b.getLeft() && a.getTop() == b.getTop()
+                && a.getRight() == b.getRight() && a.getBottom() == b.getBottom()
+                && a.getX() == b.getX() && a.getY() == b.getY()
+                && a.getAngle() == b.getAngle() && a.getFactor() == b.getFactor()
+                && a.getMaxSpeed() == b.getMaxSpeed() && a.getMaxAngularSpeed() == b.getMaxAngularSpeed()
+                && a.getVehicleType() == b.getVehicleType()
+                && a.getFacilityId() == b.getFacilityId() && a.getVehicleId() == b.getVehicleId();
+    }
+
+    /**
+     * Отображённый в память кусок файла, который переотображается дальше, когда в нём не хватает места.
+     */
+    private abstract static class Chunked implements Closeable {
+        final FileChannel channel;
+        MappedByteBuffer buffer;
+        long base;
+
+        Chunked(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        abstract MappedByteBuffer map(long position, int size) throws IOException;
+
+        /**
+         * Гарантирует, что в текущем куске есть {@code size} байт. Писатель и читатель вызывают его в одних и тех же
+         * местах с одними и теми же размерами, поэтому границы кусков у них совпадают.
+         */
+        final void ensure(int size) {
+            if (buffer != null && buffer.remaining() >= size) {
+                return;
+            }
+            try {
+                base += buffer == null ? 0 : buffer.position();
+                buffer = map(base, Math.max(CHUNK_SIZE, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    static final class Writer extends Chunked {
+        Writer(Path path) throws IOException {
+            super(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+            ensure(8);
+            buffer.putInt(MAGIC).putInt(VERSION);
+        }
+
+        @Override
+        MappedByteBuffer map(long position, int size) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        }
+
+        void writeGame(Game game) {
+            ensure(GAME_SIZE);
+            buffer.putLong(game.getRandomSeed()).putInt(game.getTickCount())
+                    .putDouble(game.getWorldWidth()).putDouble(game.getWorldHeight());
+            putBoolean(game.isFogOfWarEnabled());
+            buffer.putInt(game.getVictoryScore()).putInt(game.getFacilityCaptureScore())
+                    .putInt(game.getVehicleEliminationScore()).putInt(game.getActionDetectionInterval())
+                    .putInt(game.getBaseActionCount()).putInt(game.getAdditionalActionCountPerControlCenter())
+                    .putInt(game.getMaxUnitGroup()).putInt(game.getTerrainWeatherMapColumnCount())
+                    .putInt(game.getTerrainWeatherMapRowCount());
+            buffer.putDouble(game.getPlainTerrainVisionFactor()).putDouble(game.getPlainTerrainStealthFactor())
+                    .putDouble(game.getPlainTerrainSpeedFactor()).putDouble(game.getSwampTerrainVisionFactor())
+                    .putDouble(game.getSwampTerrainStealthFactor()).putDouble(game.getSwampTerrainSpeedFactor())
+                    .putDouble(game.getForestTerrainVisionFactor()).putDouble(game.getForestTerrainStealthFactor())
+                    .putDouble(game.getForestTerrainSpeedFactor()).putDouble(game.getClearWeatherVisionFactor())
+                    .putDouble(game.getClearWeatherStealthFactor()).putDouble(game.getClearWeatherSpeedFactor())
+                    .putDouble(game.getCloudWeatherVisionFactor()).putDouble(game.getCloudWeatherStealthFactor())
+                    .putDouble(game.getCloudWeatherSpeedFactor()).putDouble(game.getRainWeatherVisionFactor())
+                    .putDouble(game.getRainWeatherStealthFactor()).putDouble(game.getRainWeatherSpeedFactor())
+                    .putDouble(game.getVehicleRadius());
+            buffer.putInt(game.getTankDurability()).putDouble(game.getTankSpeed())
+                    .putDouble(game.getTankVisionRange()).putDouble(game.getTankGroundAttackRange())
+                    .putDouble(game.getTankAerialAttackRange()).putInt(game.getTankGroundDamage())
+                    .putInt(game.getTankAerialDamage()).putInt(game.getTankGroundDefence())
+                    .putInt(game.getTankAerialDefence()).putInt(game.getTankAttackCooldownTicks())
+                    .putInt(game.getTankProductionCost());
+            buffer.putInt(game.getIfvDurability()).putDouble(game.getIfvSpeed())
+                    .putDouble(game.getIfvVisionRange()).putDouble(game.getIfvGroundAttackRange())
+                    .putDouble(game.getIfvAerialAttackRange()).putInt(game.getIfvGroundDamage())
+                    .putInt(game.getIfvAerialDamage()).putInt(game.getIfvGroundDefence())
+                    .putInt(game.getIfvAerialDefence()).putInt(game.getIfvAttackCooldownTicks())
+                    .putInt(game.getIfvProductionCost());
+            buffer.putInt(game.getArrvDurability()).putDouble(game.getArrvSpeed())
+                    .putDouble(game.getArrvVisionRange()).putInt(game.getArrvGroundDefence())
+                    .putInt(game.getArrvAerialDefence()).putInt(game.getArrvProductionCost())
+                    .putDouble(game.getArrvRepairRange()).putDouble(game.getArrvRepairSpeed());
+            buffer.putInt(game.getHelicopterDurability()).putDouble(game.getHelicopterSpeed())
+                    .putDouble(game.getHelicopterVisionRange()).putDouble(game.getHelicopterGroundAttackRange())
+                    .putDouble(game.getHelicopterAerialAttackRange()).putInt(game.getHelicopterGroundDamage())
+                    .putInt(game.getHelicopterAerialDamage()).putInt(game.getHelicopterGroundDefence())
+                    .putInt(game.getHelicopterAerialDefence()).putInt(game.getHelicopterAttackCooldownTicks())
+                    .putInt(game.getHelicopterProductionCost());
+            buffer.putInt(game.getFighterDurability()).putDouble(game.getFighterSpeed())
+                    .putDouble(game.getFighterVisionRange()).putDouble(game.getFighterGroundAttackRange())
+                    .putDouble(game.getFighterAerialAttackRange()).putInt(game.getFighterGroundDamage())
+                    .putInt(game.getFighterAerialDamage()).putInt(game.getFighterGroundDefence())
+                    .putInt(game.getFighterAerialDefence()).putInt(game.getFighterAttackCooldownTicks())
+                    .putInt(game.getFighterProductionCost());
+            buffer.putInt(game.getMaxFacilityCapturePoints()).putDouble(game.getFacilityCapturePointsPerVehiclePerTick())
+                    .putDouble(game.getFacilityWidth()).putDouble(game.getFacilityHeight())
+                    .putInt(game.getBaseTacticalNuclearStrikeCooldown())
+                    .putInt(game.getTacticalNuclearStrikeCooldownDecreasePerControlCenter())
+                    .putDouble(game.getMaxTacticalNuclearStrikeDamage()).putDouble(game.getTacticalNuclearStrikeRadius())
+                    .putInt(game.getTacticalNuclearStrikeDelay());
+        }
+
+        void writeContext(PlayerContext playerContext) {
+            World world = playerContext.getWorld();
+            putTag(CONTEXT);
+            ensure(CONTEXT_SIZE);
+            putPlayer(playerContext.getPlayer());
+            buffer.putInt(world.getTickIndex()).putInt(world.getTickCount())
+                    .putDouble(world.getWidth()).putDouble(world.getHeight());
+
+            Player[] players = world.getPlayers();
+            buffer.putInt(players.length);
+            for (Player player : players) {
+                ensure(PLAYER_SIZE);
+                putPlayer(player);
+            }
+
+            Vehicle[] vehicles = world.getNewVehicles();
+            ensure(4);
+            buffer.putInt(vehicles.length);
+            for (Vehicle vehicle : vehicles) {
+                putVehicle(vehicle);
+            }
+
+            VehicleUpdate[] updates = world.getVehicleUpdates();
+            ensure(4);
+            buffer.putInt(updates.length);
+            for (VehicleUpdate update : updates) {
+                ensure(UPDATE_SIZE);
+                buffer.putLong(update.getId()).putDouble(update.getX()).putDouble(update.getY())
+                        .putInt(update.getDurability()).putInt(update.getRemainingAttackCooldownTicks());
+                putBoolean(update.isSelected());
+                putGroups(update.getGroups());
+            }
+
+            putCells(world.getTerrainByCellXY(), world.getWeatherByCellXY());
+
+            Facility[] facilities = world.getFacilities();
+            ensure(4);
+            buffer.putInt(facilities.length);
+            for (Facility facility : facilities) {
+                ensure(FACILITY_SIZE);
+                buffer.putLong(facility.getId());
+                putEnum(facility.getType());
+                buffer.putLong(facility.getOwnerPlayerId()).putDouble(facility.getLeft())
+                        .putDouble(facility.getTop()).putDouble(facility.getCapturePoints());
+                putEnum(facility.getVehicleType());
+                buffer.putInt(facility.getProductionProgress());
+            }
+        }
+
+        void writeMove(Move move) {
+            putTag(MOVE);
+            ensure(MOVE_SIZE);
+            putEnum(move.getAction());
+            buffer.putInt(move.getGroup())
+                    .putDouble(move.getLeft()).putDouble(move.getTop())
+                    .putDouble(move.getRight()).putDouble(move.getBottom())
+                    .putDouble(move.getX()).putDouble(move.getY())
+                    .putDouble(move.getAngle()).putDouble(move.getFactor())
+                    .putDouble(move.getMaxSpeed()).putDouble(move.getMaxAngularSpeed());
+            putEnum(move.getVehicleType());
+            buffer.putLong(move.getFacilityId()).putLong(move.getVehicleId());
+        }
+
+        private void putPlayer(Player player) {
+            buffer.putLong(player.getId());
+            putBoolean(player.isMe());
+            putBoolean(player.isStrategyCrashed());
+            buffer.putInt(player.getScore()).putInt(player.getRemainingActionCooldownTicks())
+                    .putInt(player.getRemainingNuclearStrikeCooldownTicks())
+                    .putLong(player.getNextNuclearStrikeVehicleId()).putInt(player.getNextNuclearStrikeTickIndex())
+                    .putDouble(player.getNextNuclearStrikeX()).putDouble(player.getNextNuclearStrikeY());
+        }
+
+        private void putVehicle(Vehicle vehicle) {
+            ensure(VEHICLE_SIZE);
+            buffer.putLong(vehicle.getId()).putDouble(vehicle.getX()).putDouble(vehicle.getY())
+                    .putDouble(vehicle.getRadius()).putLong(vehicle.getPlayerId())
+                    .putInt(vehicle.getDurability()).putInt(vehicle.getMaxDurability())
+                    .putDouble(vehicle.getMaxSpeed()).putDouble(vehicle.getVisionRange())
+                    .putDouble(vehicle.getSquaredVisionRange()).putDouble(vehicle.getGroundAttackRange())
+                    .putDouble(vehicle.getSquaredGroundAttackRange()).putDouble(vehicle.getAerialAttackRange())
+                    .putDouble(vehicle.getSquaredAerialAttackRange())
+                    .putInt(vehicle.getGroundDamage()).putInt(vehicle.getAerialDamage())
+                    .putInt(vehicle.getGroundDefence()).putInt(vehicle.getAerialDefence())
+                    .putInt(vehicle.getAttackCooldownTicks()).putInt(vehicle.getRemainingAttackCooldownTicks());
+            putEnum(vehicle.getType());
+            putBoolean(vehicle.isAerial());
+            putBoolean(vehicle.isSelected());
+            putGroups(vehicle.getGroups());
+        }
+
+        private void putTag(byte tag) {
+            ensure(1);
+            buffer.put(tag);
+        }
+
+        private void putGroups(int[] groups) {
+            ensure(4);
+            buffer.putInt(groups.length);
+            ensure(4 * groups.length);
+            for (int group : groups) {
+                buffer.putInt(group);
+            }
+        }
+
+        /**
+         * Местность и погода не меняются за игру, но приходят в каждом тике, поэтому пишутся только в первом
+         * контексте; в остальных записывается нулевая размерность.
+         */
+        private TerrainType[][] writtenTerrain;
+
+        private void putCells(TerrainType[][] terrain, WeatherType[][] weather) {
+            ensure(8);
+            if (terrain == writtenTerrain || terrain.length == 0) {
+                buffer.putInt(0).putInt(0);
+                return;
+            }
+            writtenTerrain = terrain;
+            int rows = terrain[0].length;
+            buffer.putInt(terrain.length).putInt(rows);
+            for (int x = 0; x < terrain.length; x++) {
+                ensure(2 * rows);
+                for (int y = 0; y < rows; y++) {
+                    putEnum(terrain[x][y]);
+                    putEnum(weather[x][y]);
+                }
+            }
+        }
+
+        private void putBoolean(boolean value) {
+            buffer.put(value ? (byte) 1 : (byte) 0);
+        }
+
+        private void putEnum(Enum<?> value) {
+            buffer.put(value == null ? (byte) -1 : (byte) value.ordinal());
+        }
+
+        /**
+         * Дописывает признак конца журнала и сбрасывает отображённые страницы на диск.
+         */
+        @Override
+        public void close() throws IOException {
+            putTag(END);
+            buffer.force();
+            super.close();
+        }
+    }
+
+    static final class Reader extends Chunked {
+        private final long size;
+        private TerrainType[][] terrain = new TerrainType[0][];
+        private WeatherType[][] weather = new WeatherType[0][];
+
+        Reader(Path path) throws IOException {
+            super(FileChannel.open(path, StandardOpenOption.READ));
+            size = channel.size();
+            ensure(8);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a replay log of version " + VERSION + ": " + path);
+            }
+        }
+
+        @Override
+        MappedByteBuffer map(long position, int size) throws IOException {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size, this.size - position));
+        }
+
+        Game readGame() {
+            ensure(GAME_SIZE);
+            return new Game(
+                    buffer.getLong(), buffer.getInt(), buffer.getDouble(), buffer.getDouble(), getBoolean(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(),
+                    buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getInt(), buffer.getDouble(), buffer.getDouble(), buffer.getInt()
+            );
+        }
+
+        /**
+         * @return Следующий контекст или {@code null}, если журнал закончился.
+         */
+        PlayerContext readContext() {
+            if (!nextIs(CONTEXT)) {
+                return null;
+            }
+            ensure(CONTEXT_SIZE);
+            Player me = getPlayer();
+            int tickIndex = buffer.getInt();
+            int tickCount = buffer.getInt();
+            double width = buffer.getDouble();
+            double height = buffer.getDouble();
+
+            Player[] players = new Player[buffer.getInt()];
+            for (int i = 0; i < players.length; i++) {
+                ensure(PLAYER_SIZE);
+                players[i] = getPlayer();
+            }
+
+            ensure(4);
+            Vehicle[] vehicles = new Vehicle[buffer.getInt()];
+            for (int i = 0; i < vehicles.length; i++) {
+                vehicles[i] = getVehicle();
+            }
+
+            ensure(4);
+            VehicleUpdate[] updates = new VehicleUpdate[buffer.getInt()];
+            for (int i = 0; i < updates.length; i++) {
+                ensure(UPDATE_SIZE);
+                long id = buffer.getLong();
+                double x = buffer.getDouble();
+                double y = buffer.getDouble();
+                int durability = buffer.getInt();
+                int cooldown = buffer.getInt();
+                boolean selected = getBoolean();
+                updates[i] = new VehicleUpdate(id, x, y, durability, cooldown, selected, getGroups());
+            }
+
+            getCells();
+
+            ensure(4);
+            Facility[] facilities = new Facility[buffer.getInt()];
+            for (int i = 0; i < facilities.length; i++) {
+                ensure(FACILITY_SIZE);
+                facilities[i] = new Facility(buffer.getLong(), getEnum(FACILITY_TYPES), buffer.getLong(),
+                        buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), getEnum(VEHICLE_TYPES), buffer.getInt());
+            }
+
+            World world = new World(tickIndex, tickCount, width, height, players, vehicles, updates, terrain, weather, facilities);
+            return new PlayerContext(me, world);
+        }
+
+        /**
+         * @return Записанный ход или {@code null}, если журнал оборвался после контекста.
+         */
+        Move readMove() {
+            if (!nextIs(MOVE)) {
+                return null;
+            }
+            ensure(MOVE_SIZE);
+            Move move = new Move();
+            move.setAction(getEnum(ACTION_TYPES));
+            move.setGroup(buffer.getInt());
+            move.setLeft(buffer.getDouble());
+            move.setTop(buffer.getDouble());
+            move.setRight(buffer.getDouble());
+            move.setBottom(buffer.getDouble());
+            move.setX(buffer.getDouble());
+            move.setY(buffer.getDouble());
+            move.setAngle(buffer.getDouble());
+            move.setFactor(buffer.getDouble());
+            move.setMaxSpeed(buffer.getDouble());
+            move.setMaxAngularSpeed(buffer.getDouble());
+            move.setVehicleType(getEnum(VEHICLE_TYPES));
+            move.setFacilityId(buffer.getLong());
+            move.setVehicleId(buffer.getLong());
+            return move;
+        }
+
+        /**
+         * Смотрит тег следующей записи и забирает его, только если он совпал: после оборванного контекста следующим
+         * может оказаться снова контекст.
+         */
+        private boolean nextIs(byte tag) {
+            if (base + buffer.position() >= size) {
+                return false;
+            }
+            ensure(1);
+            if (buffer.get(buffer.position()) != tag) {
+                return false;
+            }
+            buffer.get();
+            return true;
+        }
+
+        private Player getPlayer() {
+            return new Player(buffer.getLong(), getBoolean(), getBoolean(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt(), buffer.getLong(), buffer.getInt(), buffer.getDouble(), buffer.getDouble());
+        }
+
+        private Vehicle getVehicle() {
+            ensure(VEHICLE_SIZE);
+            return new Vehicle(buffer.getLong(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    getEnum(VEHICLE_TYPES), getBoolean(), getBoolean(), getGroups());
+        }
+
+        private int[] getGroups() {
+            ensure(4);
+            int[] groups = new int[buffer.getInt()];
+            ensure(4 * groups.length);
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = buffer.getInt();
+            }
+            return groups;
+        }
+
+        private void getCells() {
+            ensure(8);
+            int columns = buffer.getInt();
+            int rows = buffer.getInt();
+            if (columns == 0) {
+                return;
+            }
+            terrain = new TerrainType[columns][rows];
+            weather = new WeatherType[columns][rows];
+            for (int x = 0; x < columns; x++) {
+                ensure(2 * rows);
+                for (int y = 0; y < rows; y++) {
+                    terrain[x][y] = getEnum(TERRAIN_TYPES);
+                    weather[x][y] = getEnum(WEATHER_TYPES);
+                }
+            }
+        }
+
+        private boolean getBoolean() {
+            return buffer.get() != 0;
+        }
+
+        private <E> E getEnum(E[] values) {
+            byte ordinal = buffer.get();
+            return ordinal < 0 ? null : values[ordinal];
+        }
+    }
+}
@@ -1,8 +1,16 @@
 import model.*;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class Runner {
+    private static final PlayerContext END_OF_GAME = new PlayerContext(null, null);
+    private static final Move STOP = new Move();
+
     private final RemoteProcessClient remoteProcessClient;
     private final String token;
 
@@ -19,14 +27,26 @@ public final class Runner {
 
     @SuppressWarnings("WeakerAccess")
     public void run() throws IOException {
+        ReplayLog.Writer recorder = null;
         try {
             remoteProcessClient.writeTokenMessage(token);
             remoteProcessClient.writeProtocolVersionMessage();
             remoteProcessClient.readTeamSizeMessage();
             Game game = remoteProcessClient.readGameContextMessage();
 
+            String recordPath = System.getProperty("strategy.record");
+            recorder = recordPath == null ? null : new ReplayLog.Writer(Paths.get(recordPath));
+            if (recorder != null) {
+                recorder.writeGame(game);
+            }
+
             Strategy strategy = new MyStrategy();
 
+            if (Boolean.getBoolean("strategy.pipelined")) {
+                runPipelined(game, strategy, recorder);
+                return;
+            }
+
             PlayerContext playerContext;
 
             while ((playerContext = remoteProcessClient.readPlayerContextMessage()) != null) {
@@ -35,13 +55,98 @@ public final class Runner {
                     break;
                 }
 
+                if (recorder != null) {
+                    recorder.writeContext(playerContext);
+                }
+
                 Move move = new Move();
                 strategy.move(player, playerContext.getWorld(), game, move);
 
                 remoteProcessClient.writeMoveMessage(move);
+                if (recorder != null) {
+                    recorder.writeMove(move);
+                }
             }
         } finally {
+            if (recorder != null) {
+                recorder.close();
+            }
             remoteProcessClient.close();
         }
     }
+
+    /**
+     * Режим, включаемый свойством {@code strategy.pipelined}: чтение контекстов и отправка ходов идут в отдельных
+     * потоках, поток стратегии только считает. Отправка хода N совмещается с ожиданием и разбором контекста N + 1.
+     * <p>
+     * Протокол пошаговый: сервер присылает следующий контекст только после получения хода, поэтому в очередях никогда
+     * не бывает больше одного элемента, и выигрыш ограничен временем записи хода и разбора контекста.
+     */
+    private void runPipelined(Game game, Strategy strategy, ReplayLog.Writer recorder) throws IOException {
+        BlockingQueue<PlayerContext> contexts = new ArrayBlockingQueue<>(2);
+        BlockingQueue<Move> moves = new ArrayBlockingQueue<>(2);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                PlayerContext playerContext;
+                while ((playerContext = remoteProcessClient.readPlayerContextMessage()) != null
+                        && playerContext.getPlayer() != null) {
+                    contexts.put(playerContext);
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                contexts.offer(END_OF_GAME);
+            }
+        }, "runner-reader");
+
+        Thread writer = new Thread(() -> {
+            try {
+                Move move;
+                while ((move = moves.take()) != STOP) {
+                    remoteProcessClient.writeMoveMessage(move);
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+                contexts.offer(END_OF_GAME);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "runner-writer");
+
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+
+        try {
+            PlayerContext playerContext;
+            while ((playerContext = contexts.take()) != END_OF_GAME) {
+                if (recorder != null) {
+                    recorder.writeContext(playerContext);
+                }
+
+                Move move = new Move();
+                strategy.move(playerContext.getPlayer(), playerContext.getWorld(), game, move);
+
+                moves.put(move);
+                if (recorder != null) {
+                    recorder.writeMove(move);
+                }
+            }
+            moves.put(STOP);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        IOException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,97 @@
+import java.util.Arrays;
+
+/**
+ * Множество недавно сместившейся техники с истечением по тикам. Техника считается движущейся, пока с её последнего
+ * смещения прошло не больше {@code window} тиков.
+ * <p>
+ * Истечение реализовано колесом из {@code window + 1} корзин: каждое смещение кладёт идентификатор в корзину своего
+ * тика, а при переходе на новый тик разбирается только корзина, срок которой истёк. Стоимость обработки тика
+ * пропорциональна числу сместившихся единиц, а проверка «всё ли остановилось» выполняется за O(1).
+ */
+final class SettleTracker {
+    private final int window;
+    private final int[][] wheel;
+    private final int[] wheelSize;
+    private boolean[] moving = new boolean[2048];
+    private int[] lastTick = new int[2048];
+    private int movingCount;
+    private int expiredThrough = Integer.MIN_VALUE;
+
+    SettleTracker(int window) {
+        this.window = window;
+        this.wheel = new int[window + 1][256];
+        this.wheelSize = new int[window + 1];
+    }
+
+    /**
+     * Снимает отметку с техники, не смещавшейся последние {@code window} тиков. Вызывается один раз в начале тика до
+     * {@link #touch(int, int)}.
+     */
+    void advance(int tick) {
+        int end = tick - window - 1;
+        if (end <= expiredThrough) {
+            return;
+        }
+
+        int start = expiredThrough == Integer.MIN_VALUE ? end : Math.max(expiredThrough + 1, end - wheel.length + 1);
+        for (int t = start; t <= end; t++) {
+            int slot = Math.floorMod(t, wheel.length);
+            int[] ids = wheel[slot];
+            for (int i = 0, size = wheelSize[slot]; i < size; i++) {
+                int id = ids[i];
+                if (moving[id] && lastTick[id] <= end) {
+                    moving[id] = false;
+                    movingCount--;
+                }
+            }
+            wheelSize[slot] = 0;
+        }
+        expiredThrough = end;
+    }
+
+    /**
+     * Отмечает, что техника сместилась на указанном тике.
+     */
+    void touch(int id, int tick) {
+        ensureCapacity(id + 1);
+        if (!moving[id]) {
+            moving[id] = true;
+            movingCount++;
+        }
+        lastTick[id] = tick;
+
+        int slot = Math.floorMod(tick, wheel.length);
+        if (wheelSize[slot] == wheel[slot].length) {
+            wheel[slot] = Arrays.copyOf(wheel[slot], wheel[slot].length * 2);
+        }
+        wheel[slot][wheelSize[slot]++] = id;
+    }
+
+    /**
+     * Убирает уничтоженную технику.
+     */
+    void remove(int id) {
+        if (id < moving.length && moving[id]) {
+            moving[id] = false;
+            movingCount--;
+        }
+    }
+
+    boolean isMoving(int id) {
+        return id >= 0 && id < moving.length && moving[id];
+    }
+
+    int getMovingCount() {
+        return movingCount;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= moving.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, moving.length * 2);
+        moving = Arrays.copyOf(moving, newCapacity);
+        lastTick = Arrays.copyOf(lastTick, newCapacity);
+    }
+}
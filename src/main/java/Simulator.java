@@ -0,0 +1,818 @@
+import model.ActionType;
+import model.Facility;
+import model.Game;
+import model.Move;
+import model.Player;
+import model.TerrainType;
+import model.Vehicle;
+import model.VehicleType;
+import model.VehicleUpdate;
+import model.WeatherType;
+import model.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Упрощённый локальный симулятор игры, позволяющий прогонять стратегии без local-runner и сокета.
+ * <p>
+ * Реализованы выделение (CLEAR_AND_SELECT, ADD_TO_SELECTION, DESELECT), группы (ASSIGN, DISMISS, DISBAND), приказы
+ * MOVE, ROTATE и SCALE с учётом скоростей по типам, местности и погоды, ограничение числа действий в окне, стрельба,
+ * ремонт и тактический ядерный удар. Столкновения техники, туман войны и сооружения не моделируются.
+ */
+final class Simulator {
+    private static final double WIDTH = 1024;
+    private static final double HEIGHT = 1024;
+    private static final int CELLS = 32;
+    private static final double CELL_SIZE = WIDTH / CELLS;
+    private static final VehicleType[] TYPES = VehicleType.values();
+    private static final int UNITS_PER_SIDE = 10;
+
+    private static final int ORDER_NONE = 0;
+    private static final int ORDER_MOVE = 1;
+    private static final int ORDER_ROTATE = 2;
+
+    private final Game game;
+    private final Random random;
+    private final Strategy[] strategies;
+    private final long[] playerIds = {1, 2};
+    private final TerrainType[][] terrain = new TerrainType[CELLS][CELLS];
+    private final WeatherType[][] weather = new WeatherType[CELLS][CELLS];
+
+    private final int count;
+    private final Vehicle[] initial;
+    private final int[] owner;
+    private final VehicleType[] type;
+    private final double[] x;
+    private final double[] y;
+    private final double[] durability;
+    private final int[] attackCooldown;
+    private final boolean[] selected;
+    private final boolean[][] groups;
+    private final int[][] groupsArray;
+    private final boolean[] dirty;
+    private final boolean[] reportedDead;
+
+    private final int[] order;
+    private final double[] targetX;
+    private final double[] targetY;
+    private final double[] orderSpeed;
+    private final double[] centerX;
+    private final double[] centerY;
+    private final double[] remainingAngle;
+    private final double[] angularSpeed;
+
+    private final int[] score = new int[2];
+    private final int[][] actionTicks;
+    private final int[] actionCount = new int[2];
+    private final boolean[] crashed = new boolean[2];
+    private final int[] nuclearCooldown = new int[2];
+    private final long[] nuclearVehicleId = {-1, -1};
+    private final int[] nuclearTick = {-1, -1};
+    private final double[] nuclearX = {-1, -1};
+    private final double[] nuclearY = {-1, -1};
+
+    private final int[][] cellHead = new int[2][CELLS * CELLS];
+    private final int[] cellNext;
+
+    private int tick;
+
+    Simulator(Game game, Strategy first, Strategy second) {
+        this.game = game;
+        this.random = new Random(game.getRandomSeed());
+        this.strategies = new Strategy[]{first, second};
+        this.actionTicks = new int[2][game.getBaseActionCount()];
+
+        generateMap();
+        List<Vehicle> vehicles = generateVehicles();
+        count = vehicles.size() + 1;
+        initial = new Vehicle[count];
+        owner = new int[count];
+        type = new VehicleType[count];
+        x = new double[count];
+        y = new double[count];
+        durability = new double[count];
+        attackCooldown = new int[count];
+        selected = new boolean[count];
+        groups = new boolean[count][game.getMaxUnitGroup() + 1];
+        groupsArray = new int[count][];
+        dirty = new boolean[count];
+        reportedDead = new boolean[count];
+        order = new int[count];
+        targetX = new double[count];
+        targetY = new double[count];
+        orderSpeed = new double[count];
+        centerX = new double[count];
+        centerY = new double[count];
+        remainingAngle = new double[count];
+        angularSpeed = new double[count];
+        cellNext = new int[count];
+
+        for (Vehicle vehicle : vehicles) {
+            int id = (int) vehicle.getId();
+            initial[id] = vehicle;
+            owner[id] = vehicle.getPlayerId() == playerIds[0] ? 0 : 1;
+            type[id] = vehicle.getType();
+            x[id] = vehicle.getX();
+            y[id] = vehicle.getY();
+            durability[id] = vehicle.getDurability();
+        }
+    }
+
+    /**
+     * Итог одной игры.
+     */
+    static final class Result {
+        /**
+         * Индекс победившей стратегии или {@code -1} при ничьей.
+         */
+        final int winner;
+        final int ticks;
+        final int[] score;
+
+        Result(int winner, int ticks, int[] score) {
+            this.winner = winner;
+            this.ticks = ticks;
+            this.score = score;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "winner=" + winner +
+                    ", ticks=" + ticks +
+                    ", score=" + Arrays.toString(score) +
+                    '}';
+        }
+    }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        long start = System.nanoTime();
+        Result result = new Simulator(newGame(seed), new MyStrategy(), new MyStrategy()).play();
+        System.out.println(result + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Проигрывает игру до уничтожения одной из сторон или до исчерпания тиков.
+     */
+    Result play() {
+        World[] worlds = new World[2];
+        for (tick = 0; tick < game.getTickCount(); tick++) {
+            worlds[0] = newWorld(0);
+            worlds[1] = newWorld(1);
+            for (int id = 1; id < count; id++) {
+                reportedDead[id] |= dirty[id] && durability[id] <= 0;
+            }
+            Arrays.fill(dirty, false);
+
+            for (int player = 0; player < 2; player++) {
+                if (crashed[player]) {
+                    continue;
+                }
+                Move move = new Move();
+                try {
+                    strategies[player].move(worlds[player].getMyPlayer(), worlds[player], game, move);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    crashed[player] = true;
+                    continue;
+                }
+                if (getRemainingActionCooldownTicks(player) == 0) {
+                    apply(player, move);
+                }
+            }
+
+            detonate();
+            moveVehicles();
+            buildCells();
+            attack();
+            repair();
+            removeDead();
+
+            if (alive(0) == 0 || alive(1) == 0) {
+                tick++;
+                break;
+            }
+        }
+
+        int winner = score[0] == score[1] ? -1 : score[0] > score[1] ? 0 : 1;
+        if (alive(0) == 0 ^ alive(1) == 0) {
+            winner = alive(0) == 0 ? 1 : 0;
+        }
+        return new Result(winner, tick, score.clone());
+    }
+
+    private void apply(int player, Move move) {
+        ActionType action = move.getAction();
+        if (action == null || action == ActionType.NONE) {
+            return;
+        }
+
+        switch (action) {
+            case CLEAR_AND_SELECT:
+                for (int id = 1; id < count; id++) {
+                    if (owner[id] == player && selected[id]) {
+                        selected[id] = false;
+                        dirty[id] = true;
+                    }
+                }
+                select(player, move, true);
+                break;
+            case ADD_TO_SELECTION:
+                select(player, move, true);
+                break;
+            case DESELECT:
+                select(player, move, false);
+                break;
+            case ASSIGN:
+            case DISMISS:
+                for (int id = 1; id < count; id++) {
+                    if (isAlive(id) && owner[id] == player && selected[id]) {
+                        groups[id][move.getGroup()] = action == ActionType.ASSIGN;
+                        groupsArray[id] = null;
+                        dirty[id] = true;
+                    }
+                }
+                break;
+            case DISBAND:
+                for (int id = 1; id < count; id++) {
+                    if (owner[id] == player && groups[id][move.getGroup()]) {
+                        groups[id][move.getGroup()] = false;
+                        groupsArray[id] = null;
+                        dirty[id] = true;
+                    }
+                }
+                break;
+            case MOVE:
+            case SCALE:
+            case ROTATE:
+                for (int id = 1; id < count; id++) {
+                    if (isAlive(id) && owner[id] == player && selected[id]) {
+                        order(id, move);
+                    }
+                }
+                break;
+            case TACTICAL_NUCLEAR_STRIKE:
+                if (!strike(player, move)) {
+                    return;
+                }
+                break;
+            default:
+                return;
+        }
+
+        actionTicks[player][actionCount[player]++ % actionTicks[player].length] = tick;
+    }
+
+    private void select(int player, Move move, boolean value) {
+        for (int id = 1; id < count; id++) {
+            if (!isAlive(id) || owner[id] != player) {
+                continue;
+            }
+            boolean matches;
+            if (move.getGroup() > 0) {
+                matches = groups[id][move.getGroup()];
+            } else {
+                matches = x[id] >= move.getLeft() && x[id] <= move.getRight() && y[id] >= move.getTop() && y[id] <= move.getBottom()
+                        && (move.getVehicleType() == null || move.getVehicleType() == type[id]);
+            }
+            if (matches && selected[id] != value) {
+                selected[id] = value;
+                dirty[id] = true;
+            }
+        }
+    }
+
+    private void order(int id, Move move) {
+        orderSpeed[id] = move.getMaxSpeed();
+        switch (move.getAction()) {
+            case MOVE:
+                order[id] = ORDER_MOVE;
+                targetX[id] = x[id] + move.getX();
+                targetY[id] = y[id] + move.getY();
+                break;
+            case SCALE:
+                order[id] = ORDER_MOVE;
+                targetX[id] = move.getX() + (x[id] - move.getX()) * move.getFactor();
+                targetY[id] = move.getY() + (y[id] - move.getY()) * move.getFactor();
+                break;
+            default:
+                order[id] = ORDER_ROTATE;
+                centerX[id] = move.getX();
+                centerY[id] = move.getY();
+                remainingAngle[id] = move.getAngle();
+                angularSpeed[id] = move.getMaxAngularSpeed();
+        }
+    }
+
+    private boolean strike(int player, Move move) {
+        int spotter = (int) move.getVehicleId();
+        if (nuclearCooldown[player] > 0 || spotter <= 0 || spotter >= count || !isAlive(spotter) || owner[spotter] != player) {
+            return false;
+        }
+        double vision = initial[spotter].getVisionRange() * getVisionFactor(spotter);
+        if (distance(x[spotter], y[spotter], move.getX(), move.getY()) > vision) {
+            return false;
+        }
+
+        nuclearVehicleId[player] = spotter;
+        nuclearTick[player] = tick + game.getTacticalNuclearStrikeDelay();
+        nuclearX[player] = move.getX();
+        nuclearY[player] = move.getY();
+        nuclearCooldown[player] = game.getBaseTacticalNuclearStrikeCooldown();
+        return true;
+    }
+
+    private void detonate() {
+        for (int player = 0; player < 2; player++) {
+            if (nuclearCooldown[player] > 0) {
+                nuclearCooldown[player]--;
+            }
+            if (nuclearTick[player] < 0) {
+                continue;
+            }
+            if (!isAlive((int) nuclearVehicleId[player])) {
+                clearStrike(player);
+                continue;
+            }
+            if (nuclearTick[player] != tick) {
+                continue;
+            }
+
+            double radius = game.getTacticalNuclearStrikeRadius();
+            for (int id = 1; id < count; id++) {
+                double distance = distance(x[id], y[id], nuclearX[player], nuclearY[player]);
+                if (isAlive(id) && distance < radius) {
+                    damage(id, game.getMaxTacticalNuclearStrikeDamage() * (1 - distance / radius), player);
+                }
+            }
+            clearStrike(player);
+        }
+    }
+
+    private void clearStrike(int player) {
+        nuclearVehicleId[player] = -1;
+        nuclearTick[player] = -1;
+        nuclearX[player] = -1;
+        nuclearY[player] = -1;
+    }
+
+    private void moveVehicles() {
+        for (int id = 1; id < count; id++) {
+            if (!isAlive(id) || order[id] == ORDER_NONE) {
+                continue;
+            }
+
+            double speed = initial[id].getMaxSpeed() * getSpeedFactor(id);
+            if (orderSpeed[id] > 0) {
+                speed = Math.min(speed, orderSpeed[id]);
+            }
+
+            if (order[id] == ORDER_MOVE) {
+                double dx = targetX[id] - x[id];
+                double dy = targetY[id] - y[id];
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                if (distance <= speed) {
+                    setPosition(id, targetX[id], targetY[id]);
+                    order[id] = ORDER_NONE;
+                } else {
+                    setPosition(id, x[id] + dx / distance * speed, y[id] + dy / distance * speed);
+                }
+            } else {
+                double radius = distance(x[id], y[id], centerX[id], centerY[id]);
+                double step = radius > 1e-9 ? speed / radius : Math.abs(remainingAngle[id]);
+                if (angularSpeed[id] > 0) {
+                    step = Math.min(step, angularSpeed[id]);
+                }
+                step = Math.min(step, Math.abs(remainingAngle[id])) * Math.signum(remainingAngle[id]);
+                double cos = Math.cos(step);
+                double sin = Math.sin(step);
+                double dx = x[id] - centerX[id];
+                double dy = y[id] - centerY[id];
+                setPosition(id, centerX[id] + dx * cos - dy * sin, centerY[id] + dx * sin + dy * cos);
+                remainingAngle[id] -= step;
+                if (Math.abs(remainingAngle[id]) < 1e-9) {
+                    order[id] = ORDER_NONE;
+                }
+            }
+        }
+    }
+
+    private void setPosition(int id, double newX, double newY) {
+        double radius = game.getVehicleRadius();
+        newX = Math.max(radius, Math.min(WIDTH - radius, newX));
+        newY = Math.max(radius, Math.min(HEIGHT - radius, newY));
+        if (newX != x[id] || newY != y[id]) {
+            x[id] = newX;
+            y[id] = newY;
+            dirty[id] = true;
+        } else {
+            order[id] = ORDER_NONE;
+        }
+    }
+
+    private void attack() {
+        for (int id = 1; id < count; id++) {
+            if (!isAlive(id)) {
+                continue;
+            }
+            if (attackCooldown[id] > 0) {
+                attackCooldown[id]--;
+                dirty[id] = true;
+                continue;
+            }
+
+            Vehicle attacker = initial[id];
+            double range = Math.max(attacker.getGroundAttackRange(), attacker.getAerialAttackRange());
+            if (range <= 0) {
+                continue;
+            }
+
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            int column = cell(x[id]);
+            int row = cell(y[id]);
+            for (int cy = Math.max(0, row - 1); cy <= Math.min(CELLS - 1, row + 1); cy++) {
+                for (int cx = Math.max(0, column - 1); cx <= Math.min(CELLS - 1, column + 1); cx++) {
+                    for (int target = cellHead[1 - owner[id]][cy * CELLS + cx]; target != 0; target = cellNext[target]) {
+                        if (!isAlive(target) || getDamage(id, target) <= 0) {
+                            continue;
+                        }
+                        double distance = distance(x[id], y[id], x[target], y[target]);
+                        double targetRange = initial[target].isAerial() ? attacker.getAerialAttackRange() : attacker.getGroundAttackRange();
+                        if (distance <= targetRange && distance < bestDistance) {
+                            bestDistance = distance;
+                            best = target;
+                        }
+                    }
+                }
+            }
+
+            if (best > 0) {
+                damage(best, getDamage(id, best), owner[id]);
+                attackCooldown[id] = attacker.getAttackCooldownTicks();
+                dirty[id] = true;
+            }
+        }
+    }
+
+    private void repair() {
+        boolean[] damaged = new boolean[2];
+        for (int id = 1; id < count; id++) {
+            damaged[owner[id]] |= isAlive(id) && durability[id] < initial[id].getMaxDurability();
+        }
+
+        double range = game.getArrvRepairRange();
+        for (int id = 1; id < count; id++) {
+            if (!isAlive(id) || type[id] != VehicleType.ARRV || !damaged[owner[id]]) {
+                continue;
+            }
+            int column = cell(x[id]);
+            int row = cell(y[id]);
+            for (int cy = Math.max(0, row - 1); cy <= Math.min(CELLS - 1, row + 1); cy++) {
+                for (int cx = Math.max(0, column - 1); cx <= Math.min(CELLS - 1, column + 1); cx++) {
+                    for (int target = cellHead[owner[id]][cy * CELLS + cx]; target != 0; target = cellNext[target]) {
+                        if (isAlive(target) && target != id
+                                && durability[target] < initial[target].getMaxDurability()
+                                && distance(x[id], y[id], x[target], y[target]) <= range) {
+                            int before = (int) Math.ceil(durability[target]);
+                            durability[target] = Math.min(initial[target].getMaxDurability(), durability[target] + game.getArrvRepairSpeed());
+                            dirty[target] |= (int) Math.ceil(durability[target]) != before;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int getDamage(int attacker, int target) {
+        Vehicle a = initial[attacker];
+        Vehicle t = initial[target];
+        return t.isAerial() ? a.getAerialDamage() - t.getAerialDefence() : a.getGroundDamage() - t.getGroundDefence();
+    }
+
+    private void damage(int id, double value, int byPlayer) {
+        if (!isAlive(id) || value <= 0) {
+            return;
+        }
+        int before = (int) Math.ceil(durability[id]);
+        durability[id] -= value;
+        dirty[id] |= (int) Math.ceil(durability[id]) != before;
+        if (durability[id] <= 0 && owner[id] != byPlayer) {
+            score[byPlayer] += game.getVehicleEliminationScore();
+        }
+    }
+
+    private void removeDead() {
+        for (int id = 1; id < count; id++) {
+            if (durability[id] <= 0 && !reportedDead[id]) {
+                durability[id] = 0;
+                order[id] = ORDER_NONE;
+                dirty[id] = true;
+            }
+        }
+    }
+
+    private void buildCells() {
+        Arrays.fill(cellHead[0], 0);
+        Arrays.fill(cellHead[1], 0);
+        for (int id = 1; id < count; id++) {
+            if (isAlive(id)) {
+                int[] head = cellHead[owner[id]];
+                int cell = cell(y[id]) * CELLS + cell(x[id]);
+                cellNext[id] = head[cell];
+                head[cell] = id;
+            }
+        }
+    }
+
+    private World newWorld(int player) {
+        Vehicle[] newVehicles;
+        VehicleUpdate[] updates;
+        if (tick == 0) {
+            newVehicles = Arrays.copyOfRange(initial, 1, count);
+            updates = new VehicleUpdate[0];
+        } else {
+            newVehicles = new Vehicle[0];
+            List<VehicleUpdate> list = new ArrayList<>();
+            for (int id = 1; id < count; id++) {
+                if (dirty[id] && !reportedDead[id]) {
+                    boolean own = owner[id] == player;
+                    list.add(new VehicleUpdate(id, x[id], y[id], (int) Math.ceil(durability[id]), attackCooldown[id],
+                            own && selected[id], own ? getGroups(id) : new int[0]));
+                }
+            }
+            updates = list.toArray(new VehicleUpdate[0]);
+        }
+        Player[] players = {newPlayer(player, true), newPlayer(1 - player, false)};
+        return new World(tick, game.getTickCount(), WIDTH, HEIGHT, players, newVehicles, updates, terrain, weather, new Facility[0]);
+    }
+
+    private Player newPlayer(int player, boolean me) {
+        return new Player(playerIds[player], me, crashed[player], score[player], getRemainingActionCooldownTicks(player),
+                nuclearCooldown[player], nuclearVehicleId[player], nuclearTick[player], nuclearX[player], nuclearY[player]);
+    }
+
+    /**
+     * Ограничение действий: не больше {@link Game#getBaseActionCount()} действий за последние
+     * {@link Game#getActionDetectionInterval()} тиков.
+     */
+    private int getRemainingActionCooldownTicks(int player) {
+        int[] ticks = actionTicks[player];
+        if (actionCount[player] < ticks.length) {
+            return 0;
+        }
+        int oldest = ticks[actionCount[player] % ticks.length];
+        return Math.max(0, oldest + game.getActionDetectionInterval() - tick);
+    }
+
+    private int[] getGroups(int id) {
+        if (groupsArray[id] != null) {
+            return groupsArray[id];
+        }
+        int size = 0;
+        for (boolean member : groups[id]) {
+            if (member) {
+                size++;
+            }
+        }
+        int[] result = new int[size];
+        for (int group = 0, i = 0; group < groups[id].length; group++) {
+            if (groups[id][group]) {
+                result[i++] = group;
+            }
+        }
+        return groupsArray[id] = result;
+    }
+
+    private double getSpeedFactor(int id) {
+        int cx = cell(x[id]);
+        int cy = cell(y[id]);
+        if (initial[id].isAerial()) {
+            switch (weather[cx][cy]) {
+                case CLOUD:
+                    return game.getCloudWeatherSpeedFactor();
+                case RAIN:
+                    return game.getRainWeatherSpeedFactor();
+                default:
+                    return game.getClearWeatherSpeedFactor();
+            }
+        }
+        switch (terrain[cx][cy]) {
+            case SWAMP:
+                return game.getSwampTerrainSpeedFactor();
+            case FOREST:
+                return game.getForestTerrainSpeedFactor();
+            default:
+                return game.getPlainTerrainSpeedFactor();
+        }
+    }
+
+    private double getVisionFactor(int id) {
+        int cx = cell(x[id]);
+        int cy = cell(y[id]);
+        if (initial[id].isAerial()) {
+            switch (weather[cx][cy]) {
+                case CLOUD:
+                    return game.getCloudWeatherVisionFactor();
+                case RAIN:
+                    return game.getRainWeatherVisionFactor();
+                default:
+                    return game.getClearWeatherVisionFactor();
+            }
+        }
+        switch (terrain[cx][cy]) {
+            case SWAMP:
+                return game.getSwampTerrainVisionFactor();
+            case FOREST:
+                return game.getForestTerrainVisionFactor();
+            default:
+                return game.getPlainTerrainVisionFactor();
+        }
+    }
+
+    private boolean isAlive(int id) {
+        return id > 0 && id < count && durability[id] > 0;
+    }
+
+    private int alive(int player) {
+        int result = 0;
+        for (int id = 1; id < count; id++) {
+            if (owner[id] == player && isAlive(id)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static int cell(double coordinate) {
+        return Math.min(CELLS - 1, Math.max(0, (int) (coordinate / CELL_SIZE)));
+    }
+
+    private static double distance(double x1, double y1, double x2, double y2) {
+        return Math.sqrt((x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2));
+    }
+
+    /**
+     * Местность и погода симметричны относительно центра карты, как и в настоящей игре.
+     */
+    private void generateMap() {
+        for (int cx = 0; cx < CELLS; cx++) {
+            for (int cy = 0; cy < CELLS; cy++) {
+                if (cx * CELLS + cy >= CELLS * CELLS / 2) {
+                    terrain[cx][cy] = terrain[CELLS - 1 - cx][CELLS - 1 - cy];
+                    weather[cx][cy] = weather[CELLS - 1 - cx][CELLS - 1 - cy];
+                    continue;
+                }
+                int t = random.nextInt(10);
+                terrain[cx][cy] = t < 7 ? TerrainType.PLAIN : t < 9 ? TerrainType.FOREST : TerrainType.SWAMP;
+                int w = random.nextInt(10);
+                weather[cx][cy] = w < 7 ? WeatherType.CLEAR : w < 9 ? WeatherType.CLOUD : WeatherType.RAIN;
+            }
+        }
+    }
+
+    /**
+     * Каждый тип техники стоит квадратом 10x10 в одной из девяти клеток 3x3 в углу своего игрока. Наземные типы
+     * занимают разные клетки, воздушные тоже; армия второго игрока зеркальна первой.
+     */
+    private List<Vehicle> generateVehicles() {
+        List<Integer> groundSlots = shuffledSlots();
+        List<Integer> airSlots = shuffledSlots();
+        List<Vehicle> result = new ArrayList<>();
+        long id = 1;
+        for (int player = 0; player < 2; player++) {
+            int ground = 0;
+            int air = 0;
+            for (VehicleType vehicleType : TYPES) {
+                boolean aerial = vehicleType == VehicleType.FIGHTER || vehicleType == VehicleType.HELICOPTER;
+                int slot = aerial ? airSlots.get(air++) : groundSlots.get(ground++);
+                double left = 18 + 74 * (slot % 3);
+                double top = 18 + 74 * (slot / 3);
+                for (int i = 0; i < UNITS_PER_SIDE * UNITS_PER_SIDE; i++) {
+                    double vx = left + 6 * (i % UNITS_PER_SIDE);
+                    double vy = top + 6 * (i / UNITS_PER_SIDE);
+                    if (player == 1) {
+                        vx = WIDTH - vx;
+                        vy = HEIGHT - vy;
+                    }
+                    result.add(newVehicle(game, id++, playerIds[player], vehicleType, vx, vy));
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<Integer> shuffledSlots() {
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            slots.add(i);
+        }
+        Collections.shuffle(slots, random);
+        return slots;
+    }
+
+    static Vehicle newVehicle(Game game, long id, long playerId, VehicleType type, double x, double y) {
+        int durability;
+        double speed;
+        double vision;
+        double groundRange;
+        double aerialRange;
+        int groundDamage;
+        int aerialDamage;
+        int groundDefence;
+        int aerialDefence;
+        int cooldown;
+        switch (type) {
+            case ARRV:
+                durability = game.getArrvDurability();
+                speed = game.getArrvSpeed();
+                vision = game.getArrvVisionRange();
+                groundRange = 0;
+                aerialRange = 0;
+                groundDamage = 0;
+                aerialDamage = 0;
+                groundDefence = game.getArrvGroundDefence();
+                aerialDefence = game.getArrvAerialDefence();
+                cooldown = 0;
+                break;
+            case FIGHTER:
+                durability = game.getFighterDurability();
+                speed = game.getFighterSpeed();
+                vision = game.getFighterVisionRange();
+                groundRange = game.getFighterGroundAttackRange();
+                aerialRange = game.getFighterAerialAttackRange();
+                groundDamage = game.getFighterGroundDamage();
+                aerialDamage = game.getFighterAerialDamage();
+                groundDefence = game.getFighterGroundDefence();
+                aerialDefence = game.getFighterAerialDefence();
+                cooldown = game.getFighterAttackCooldownTicks();
+                break;
+            case HELICOPTER:
+                durability = game.getHelicopterDurability();
+                speed = game.getHelicopterSpeed();
+                vision = game.getHelicopterVisionRange();
+                groundRange = game.getHelicopterGroundAttackRange();
+                aerialRange = game.getHelicopterAerialAttackRange();
+                groundDamage = game.getHelicopterGroundDamage();
+                aerialDamage = game.getHelicopterAerialDamage();
+                groundDefence = game.getHelicopterGroundDefence();
+                aerialDefence = game.getHelicopterAerialDefence();
+                cooldown = game.getHelicopterAttackCooldownTicks();
+                break;
+            case IFV:
+                durability = game.getIfvDurability();
+                speed = game.getIfvSpeed();
+                vision = game.getIfvVisionRange();
+                groundRange = game.getIfvGroundAttackRange();
+                aerialRange = game.getIfvAerialAttackRange();
+                groundDamage = game.getIfvGroundDamage();
+                aerialDamage = game.getIfvAerialDamage();
+                groundDefence = game.getIfvGroundDefence();
+                aerialDefence = game.getIfvAerialDefence();
+                cooldown = game.getIfvAttackCooldownTicks();
+                break;
+            default:
+                durability = game.getTankDurability();
+                speed = game.getTankSpeed();
+                vision = game.getTankVisionRange();
+                groundRange = game.getTankGroundAttackRange();
+                aerialRange = game.getTankAerialAttackRange();
+                groundDamage = game.getTankGroundDamage();
+                aerialDamage = game.getTankAerialDamage();
+                groundDefence = game.getTankGroundDefence();
+                aerialDefence = game.getTankAerialDefence();
+                cooldown = game.getTankAttackCooldownTicks();
+        }
+
+        boolean aerial = type == VehicleType.FIGHTER || type == VehicleType.HELICOPTER;
+        return new Vehicle(
+                id, x, y, game.getVehicleRadius(), playerId, durability, durability, speed,
+                vision, vision * vision, groundRange, groundRange * groundRange, aerialRange, aerialRange * aerialRange,
+                groundDamage, aerialDamage, groundDefence, aerialDefence, cooldown, 0, type, aerial, false, new int[0]
+        );
+    }
+
+    /**
+     * @return Игровые константы первого раунда CodeWars 2017 (без тумана войны и сооружений).
+     */
+    static Game newGame(long seed) {
+        return new Game(
+                seed, 20000, WIDTH, HEIGHT, false, 1000, 100, 1, 60, 12, 3, 100, CELLS, CELLS,
+                1.0, 1.0, 1.0, 1.0, 1.0, 0.6, 0.8, 0.6, 0.8,
+                1.0, 1.0, 1.0, 0.8, 0.8, 0.8, 0.6, 0.6, 0.6,
+                2.0,
+                100, 0.3, 80.0, 20.0, 18.0, 100, 60, 80, 60, 60, 60,
+                100, 0.4, 80.0, 18.0, 20.0, 90, 80, 60, 80, 60, 60,
+                50, 0.4, 60.0, 50, 20, 60, 10.0, 0.1,
+                100, 0.9, 100.0, 20.0, 18.0, 100, 80, 40, 40, 60, 60,
+                100, 1.2, 120.0, 0.0, 20.0, 0, 100, 70, 70, 60, 60,
+                100, 0.005, 64.0, 64.0,
+                1200, 60, 99.0, 50.0, 30
+        );
+    }
+}
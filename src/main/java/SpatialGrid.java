@@ -0,0 +1,222 @@
+import model.VehicleType;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Равномерная сетка корзин поверх карты для запросов близости. Техника каждой стороны хранится в отдельных
+ * интрузивных списках по ячейкам, поэтому перемещение единицы между ячейками стоит O(1) и не создаёт объектов.
+ * <p>
+ * Типы техники в запросах задаются битовой маской по {@link VehicleType#ordinal()}.
+ */
+final class SpatialGrid {
+    static final int ALL_TYPES = (1 << VehicleType.values().length) - 1;
+
+    private static final int ALLY = 0;
+    private static final int ENEMY = 1;
+    private static final int NONE = -1;
+
+    private final VehicleStore vehicles;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[][] heads;
+    private int[] next = new int[2048];
+    private int[] prev = new int[2048];
+    private int[] cellById = new int[2048];
+
+    SpatialGrid(VehicleStore vehicles, double width, double height, double cellSize) {
+        this.vehicles = vehicles;
+        this.cellSize = cellSize;
+        this.columns = (int) Math.ceil(width / cellSize);
+        this.rows = (int) Math.ceil(height / cellSize);
+        this.heads = new int[2][columns * rows];
+        Arrays.fill(heads[ALLY], NONE);
+        Arrays.fill(heads[ENEMY], NONE);
+        Arrays.fill(cellById, NONE);
+    }
+
+    /**
+     * Помещает технику в ячейку, соответствующую её текущим координатам в {@link VehicleStore}.
+     */
+    void add(int id) {
+        ensureCapacity(id + 1);
+        link(id, cellOf(vehicles.getX(id), vehicles.getY(id)));
+    }
+
+    /**
+     * Переносит технику в другую ячейку, если её координаты в {@link VehicleStore} вышли за пределы текущей.
+     */
+    void move(int id) {
+        int cell = cellOf(vehicles.getX(id), vehicles.getY(id));
+        if (cellById[id] != cell) {
+            unlink(id);
+            link(id, cell);
+        }
+    }
+
+    void remove(int id) {
+        if (id < cellById.length && cellById[id] != NONE) {
+            unlink(id);
+        }
+    }
+
+    /**
+     * Проверяет, есть ли техника указанной стороны и типа на расстоянии строго меньше {@code radius} от точки.
+     */
+    boolean anyWithin(boolean ally, double x, double y, double radius, int typeMask) {
+        int[] head = heads[ally ? ALLY : ENEMY];
+        double radius2 = radius * radius;
+        int minColumn = column(x - radius);
+        int maxColumn = column(x + radius);
+        int minRow = row(y - radius);
+        int maxRow = row(y + radius);
+
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                for (int id = head[row * columns + column]; id != NONE; id = next[id]) {
+                    if ((typeMask & (1 << vehicles.getTypeOrdinal(id))) != 0 && distance2(id, x, y) < radius2) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ищет ближайшую к точке технику указанной стороны и типа не дальше {@code radius}. Ячейки просматриваются
+     * расширяющимися кольцами, поиск останавливается, как только следующее кольцо заведомо дальше найденного.
+     *
+     * @param filter Дополнительное условие на технику или {@code null}.
+     * @return Идентификатор найденной техники или {@code -1}.
+     */
+    int nearest(boolean ally, double x, double y, double radius, int typeMask, IntPredicate filter) {
+        int[] head = heads[ally ? ALLY : ENEMY];
+        int centerColumn = column(x);
+        int centerRow = row(y);
+        int maxRing = Math.max(columns, rows);
+        if (radius < maxRing * cellSize) {
+            maxRing = (int) Math.ceil(radius / cellSize) + 1;
+        }
+
+        int best = NONE;
+        double bestDistance2 = radius * radius;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            double ringDistance = (ring - 1) * cellSize;
+            if (ringDistance > 0 && ringDistance * ringDistance >= bestDistance2) {
+                break;
+            }
+
+            int minRow = Math.max(0, centerRow - ring);
+            int maxRow = Math.min(rows - 1, centerRow + ring);
+            int minColumn = Math.max(0, centerColumn - ring);
+            int maxColumn = Math.min(columns - 1, centerColumn + ring);
+            for (int row = minRow; row <= maxRow; row++) {
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int column = edgeRow ? minColumn : centerColumn - ring; column <= maxColumn; column += step) {
+                    if (column < minColumn) {
+                        continue;
+                    }
+                    for (int id = head[row * columns + column]; id != NONE; id = next[id]) {
+                        if ((typeMask & (1 << vehicles.getTypeOrdinal(id))) == 0) {
+                            continue;
+                        }
+                        double distance2 = distance2(id, x, y);
+                        if (distance2 < bestDistance2 && (filter == null || filter.test(id))) {
+                            bestDistance2 = distance2;
+                            best = id;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Складывает в {@code ids} технику указанной стороны на расстоянии не больше {@code radius} от точки.
+     *
+     * @return Число найденной техники, но не больше {@code ids.length}.
+     */
+    int collect(boolean ally, double x, double y, double radius, int[] ids) {
+        int[] head = heads[ally ? ALLY : ENEMY];
+        double radius2 = radius * radius;
+        int minColumn = column(x - radius);
+        int maxColumn = column(x + radius);
+        int minRow = row(y - radius);
+        int maxRow = row(y + radius);
+
+        int count = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                for (int id = head[row * columns + column]; id != NONE; id = next[id]) {
+                    if (distance2(id, x, y) <= radius2) {
+                        if (count == ids.length) {
+                            return count;
+                        }
+                        ids[count++] = id;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private double distance2(int id, double x, double y) {
+        double dx = vehicles.getX(id) - x;
+        double dy = vehicles.getY(id) - y;
+        return dx * dx + dy * dy;
+    }
+
+    private int column(double x) {
+        return Math.min(columns - 1, Math.max(0, (int) (x / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.min(rows - 1, Math.max(0, (int) (y / cellSize)));
+    }
+
+    private int cellOf(double x, double y) {
+        return row(y) * columns + column(x);
+    }
+
+    private void link(int id, int cell) {
+        int[] head = heads[vehicles.isAlly(id) ? ALLY : ENEMY];
+        int first = head[cell];
+        next[id] = first;
+        prev[id] = NONE;
+        if (first != NONE) {
+            prev[first] = id;
+        }
+        head[cell] = id;
+        cellById[id] = cell;
+    }
+
+    private void unlink(int id) {
+        int cell = cellById[id];
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else {
+            heads[vehicles.isAlly(id) ? ALLY : ENEMY][cell] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+        cellById[id] = NONE;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= cellById.length) {
+            return;
+        }
+
+        int oldCapacity = cellById.length;
+        int newCapacity = Math.max(capacity, oldCapacity * 2);
+        next = Arrays.copyOf(next, newCapacity);
+        prev = Arrays.copyOf(prev, newCapacity);
+        cellById = Arrays.copyOf(cellById, newCapacity);
+        Arrays.fill(cellById, oldCapacity, newCapacity, NONE);
+    }
+}
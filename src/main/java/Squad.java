@@ -0,0 +1,127 @@
+import model.VehicleType;
+
+/**
+ * Отряд: часть армии в собственной группе со своей целью и состоянием. Центр и состав пересчитываются каждый тик
+ * через {@link #clear()} и {@link #add}.
+ */
+final class Squad {
+    enum State {
+        /**
+         * Группа назначена, но состав ещё не пришёл в обновлениях.
+         */
+        FORMING,
+
+        /**
+         * Идёт к своей цели.
+         */
+        ADVANCE,
+
+        /**
+         * Ведёт бой.
+         */
+        FIGHT,
+
+        /**
+         * Вся техника отряда уничтожена.
+         */
+        DEAD
+    }
+
+    final int group;
+    final int[] counts = new int[VehicleType.values().length];
+    private State state = State.FORMING;
+    private int size;
+    private double sumX;
+    private double sumY;
+    private double targetX;
+    private double targetY;
+    private double waypointX;
+    private double waypointY;
+    private int orderTick = Integer.MIN_VALUE;
+
+    Squad(int group) {
+        this.group = group;
+    }
+
+    void clear() {
+        size = 0;
+        sumX = 0;
+        sumY = 0;
+        for (int type = 0; type < counts.length; type++) {
+            counts[type] = 0;
+        }
+    }
+
+    void add(double x, double y, int type) {
+        size++;
+        sumX += x;
+        sumY += y;
+        counts[type]++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double getX() {
+        return sumX / size;
+    }
+
+    double getY() {
+        return sumY / size;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    double getTargetX() {
+        return targetX;
+    }
+
+    double getTargetY() {
+        return targetY;
+    }
+
+    /**
+     * Переводит отряд в новое состояние; смена состояния требует нового приказа.
+     */
+    void setState(State state) {
+        if (this.state != state) {
+            this.state = state;
+            orderTick = Integer.MIN_VALUE;
+        }
+    }
+
+    void setTarget(double x, double y) {
+        targetX = x;
+        targetY = y;
+    }
+
+    double getWaypointX() {
+        return waypointX;
+    }
+
+    double getWaypointY() {
+        return waypointY;
+    }
+
+    /**
+     * Точка, куда отряд ведёт последний приказ: цель или промежуточная точка пути к ней.
+     */
+    void setWaypoint(double x, double y) {
+        waypointX = x;
+        waypointY = y;
+    }
+
+    /**
+     * @return Возвращает {@code true}, если с последнего приказа прошло не меньше {@code interval} тиков.
+     */
+    boolean isOrderDue(int tick, int interval) {
+        return orderTick == Integer.MIN_VALUE || tick - orderTick >= interval;
+    }
+
+    void ordered(int tick) {
+        orderTick = tick;
+    }
+}
@@ -0,0 +1,177 @@
+import model.Game;
+
+import java.util.Arrays;
+
+/**
+ * Выбор точки ядерного удара. Точка оценивается ожидаемым уроном противнику за вычетом урона нашей технике: каждая
+ * техника в радиусе получает {@code max * (1 - d / radius)}, но не больше оставшейся прочности.
+ * <p>
+ * Кандидаты — позиции техники противника в пределах обзора наводчика. Техника обеих сторон вокруг наводчика один
+ * раз выбирается из {@link SpatialGrid} в плоские массивы {@link Area}, после чего каждый кандидат считается простым
+ * циклом по ним без ветвлений и обращений к объектам. Оценка {@link #evaluate} читает только {@link Area}, поэтому
+ * её можно выполнять в другом потоке на копии.
+ */
+final class StrikePlanner {
+    private static final int CAPACITY = 2048;
+
+    private final VehicleStore vehicles;
+    private final SpatialGrid grid;
+    private final float radius;
+    private final float maxDamage;
+
+    private final int[] ids = new int[CAPACITY];
+    private final Area area = new Area(CAPACITY);
+
+    /**
+     * Техника вокруг наводчика и кандидаты в точки удара.
+     */
+    static final class Area {
+        final float[] xs;
+        final float[] ys;
+        final float[] durabilities;
+        final float[] signs;
+        final float[] candidateXs;
+        final float[] candidateYs;
+        int count;
+        int candidateCount;
+        float spotterX;
+        float spotterY;
+        float spotterDurability;
+
+        Area(int capacity) {
+            this(new float[capacity], new float[capacity], new float[capacity], new float[capacity],
+                    new float[capacity], new float[capacity]);
+        }
+
+        private Area(float[] xs, float[] ys, float[] durabilities, float[] signs, float[] candidateXs, float[] candidateYs) {
+            this.xs = xs;
+            this.ys = ys;
+            this.durabilities = durabilities;
+            this.signs = signs;
+            this.candidateXs = candidateXs;
+            this.candidateYs = candidateYs;
+        }
+
+        /**
+         * @return Копия точно по размеру, которую уже не меняет {@link StrikePlanner}.
+         */
+        Area copy() {
+            Area copy = new Area(Arrays.copyOf(xs, count), Arrays.copyOf(ys, count),
+                    Arrays.copyOf(durabilities, count), Arrays.copyOf(signs, count),
+                    Arrays.copyOf(candidateXs, candidateCount), Arrays.copyOf(candidateYs, candidateCount));
+            copy.count = count;
+            copy.candidateCount = candidateCount;
+            copy.spotterX = spotterX;
+            copy.spotterY = spotterY;
+            copy.spotterDurability = spotterDurability;
+            return copy;
+        }
+    }
+
+    /**
+     * Лучшая найденная точка удара.
+     */
+    static final class Strike {
+        final double x;
+        final double y;
+        final double score;
+
+        Strike(double x, double y, double score) {
+            this.x = x;
+            this.y = y;
+            this.score = score;
+        }
+    }
+
+    StrikePlanner(VehicleStore vehicles, SpatialGrid grid, Game game) {
+        this.vehicles = vehicles;
+        this.grid = grid;
+        this.radius = (float) game.getTacticalNuclearStrikeRadius();
+        this.maxDamage = (float) game.getMaxTacticalNuclearStrikeDamage();
+    }
+
+    /**
+     * Ищет лучшую точку удара не дальше {@code reach} от наводчика.
+     *
+     * @return Лучшая точка с положительной оценкой или {@code null}.
+     */
+    Strike plan(int spotter, double reach) {
+        return evaluate(gather(spotter, reach));
+    }
+
+    /**
+     * Выбирает технику обеих сторон, которую может задеть удар в пределах обзора наводчика; техника противника в
+     * пределах обзора становится кандидатом в точки удара.
+     *
+     * @return Внутренний буфер, который перезаписывается следующим вызовом.
+     */
+    Area gather(int spotter, double reach) {
+        area.count = 0;
+        area.candidateCount = 0;
+        area.spotterX = (float) vehicles.getX(spotter);
+        area.spotterY = (float) vehicles.getY(spotter);
+        area.spotterDurability = vehicles.getDurability(spotter);
+        gather(false, reach);
+        gather(true, reach);
+        return area;
+    }
+
+    /**
+     * Оценивает кандидатов. Удар, который убил бы самого наводчика, не рассматривается: без него удар отменяется.
+     *
+     * @return Лучшая точка с положительной оценкой или {@code null}.
+     */
+    Strike evaluate(Area area) {
+        float invRadius = 1 / radius;
+        double bestScore = 0;
+        double bestX = 0;
+        double bestY = 0;
+        for (int candidate = 0; candidate < area.candidateCount; candidate++) {
+            float x = area.candidateXs[candidate];
+            float y = area.candidateYs[candidate];
+
+            float score = 0;
+            for (int i = 0; i < area.count; i++) {
+                float dx = area.xs[i] - x;
+                float dy = area.ys[i] - y;
+                float damage = maxDamage * Math.max(0, 1 - (float) Math.sqrt(dx * dx + dy * dy) * invRadius);
+                score += area.signs[i] * Math.min(area.durabilities[i], damage);
+            }
+
+            if (score > bestScore && damage(area.spotterX, area.spotterY, x, y) < area.spotterDurability) {
+                bestScore = score;
+                bestX = x;
+                bestY = y;
+            }
+        }
+        return bestScore > 0 ? new Strike(bestX, bestY, bestScore) : null;
+    }
+
+    private void gather(boolean ally, double reach) {
+        int found = grid.collect(ally, area.spotterX, area.spotterY, reach + radius, ids);
+        double reach2 = reach * reach;
+        for (int i = 0; i < found && area.count < CAPACITY; i++) {
+            int id = ids[i];
+            float x = (float) vehicles.getX(id);
+            float y = (float) vehicles.getY(id);
+            area.xs[area.count] = x;
+            area.ys[area.count] = y;
+            area.durabilities[area.count] = vehicles.getDurability(id);
+            area.signs[area.count] = ally ? -1 : 1;
+            area.count++;
+
+            double dx = x - area.spotterX;
+            double dy = y - area.spotterY;
+            if (!ally && dx * dx + dy * dy <= reach2) {
+                area.candidateXs[area.candidateCount] = x;
+                area.candidateYs[area.candidateCount] = y;
+                area.candidateCount++;
+            }
+        }
+    }
+
+    private float damage(double x, double y, float strikeX, float strikeY) {
+        double distance = Math.hypot(x - strikeX, y - strikeY);
+        return distance >= radius ? 0 : (float) (maxDamage * (1 - distance / radius));
+    }
+}
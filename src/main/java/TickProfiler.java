@@ -0,0 +1,167 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+
+/**
+ * Замеры времени по участкам {@link MyStrategy#move} и сторож общего бюджета времени на игру.
+ * <p>
+ * На каждый участок заранее выделена {@link LatencyHistogram}, поэтому замер не создаёт объектов. Сторож считает
+ * суммарное время всех тиков и сообщает, когда оно подошло к {@link #WATCHDOG_RATIO} от бюджета, чтобы стратегия
+ * перешла на дешёвую ветку решений.
+ * <p>
+ * Если при запуске задано свойство {@code strategy.profile}, замеры всех профилировщиков одного потока копятся в
+ * общих {@link Totals}, а одна сводка по всем играм процесса печатается в {@code System.err} при его завершении: игра
+ * может закончиться уничтожением армии, и последнего тика стратегия не увидит. Так {@link BatchRunner} и
+ * {@link Simulator} держат до выхода только замеры своих потоков, а не каждой сыгранной стратегии.
+ */
+final class TickProfiler {
+    /**
+     * Бюджет на тик, из которого складывается бюджет на игру. Берётся с запасом относительно лимита системы.
+     */
+    static final long BUDGET_PER_TICK_NANOS = 10_000_000L;
+    static final double WATCHDOG_RATIO = 0.8;
+
+    enum Section {
+        INITIALIZE_TICK,
+
+        EXECUTE_DELAYED_MOVE,
+
+        AIR_ATTACK,
+
+        READY,
+
+        IN_BATTLE,
+
+        GO,
+
+        SPARTA,
+
+        SQUADS,
+
+        BATTLE_SEARCH,
+
+        TICK
+    }
+
+    private static final List<Totals> ALL_TOTALS = new ArrayList<>();
+    private static final ThreadLocal<Totals> THREAD_TOTALS = ThreadLocal.withInitial(TickProfiler::register);
+
+    private final Totals totals;
+    private final LatencyHistogram[] histograms;
+    private long budget = Long.MAX_VALUE;
+    private long spent;
+    private long tickStart;
+    private long sectionStart;
+    private boolean exhausted;
+
+    /**
+     * Замеры профилировщиков одного потока. Пишет в них только этот поток.
+     */
+    private static final class Totals {
+        final LatencyHistogram[] histograms = new LatencyHistogram[Section.values().length];
+        int profilers;
+        long budget;
+        long spent;
+        int exhausted;
+
+        Totals() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        void add(Totals other) {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i].add(other.histograms[i]);
+            }
+            profilers += other.profilers;
+            budget += other.budget;
+            spent += other.spent;
+            exhausted += other.exhausted;
+        }
+    }
+
+    TickProfiler() {
+        totals = Boolean.getBoolean("strategy.profile") ? THREAD_TOTALS.get() : new Totals();
+        totals.profilers++;
+        histograms = totals.histograms;
+    }
+
+    /**
+     * Заводит замеры потока; первый из них ставит общий обработчик завершения процесса.
+     */
+    private static Totals register() {
+        Totals totals = new Totals();
+        synchronized (ALL_TOTALS) {
+            if (ALL_TOTALS.isEmpty()) {
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> dumpAll(System.err)));
+            }
+            ALL_TOTALS.add(totals);
+        }
+        return totals;
+    }
+
+    void setTickCount(int tickCount) {
+        budget = tickCount * BUDGET_PER_TICK_NANOS;
+        totals.budget += budget;
+    }
+
+    void startTick() {
+        tickStart = System.nanoTime();
+    }
+
+    void finishTick() {
+        long elapsed = System.nanoTime() - tickStart;
+        histograms[Section.TICK.ordinal()].record(elapsed);
+        spent += elapsed;
+        totals.spent += elapsed;
+        if (!exhausted && spent > budget * WATCHDOG_RATIO) {
+            exhausted = true;
+            totals.exhausted++;
+        }
+    }
+
+    void start() {
+        sectionStart = System.nanoTime();
+    }
+
+    void stop(Section section) {
+        histograms[section.ordinal()].record(System.nanoTime() - sectionStart);
+    }
+
+    /**
+     * @return Возвращает {@code true}, если суммарное время тиков подошло к бюджету на игру.
+     */
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    long getSpent() {
+        return spent;
+    }
+
+    /**
+     * Печатает сводку по замерам всех потоков.
+     */
+    private static void dumpAll(PrintStream out) {
+        Totals sum = new Totals();
+        synchronized (ALL_TOTALS) {
+            for (Totals totals : ALL_TOTALS) {
+                sum.add(totals);
+            }
+        }
+        LatencyHistogram[] histograms = sum.histograms;
+        Formatter report = new Formatter();
+        report.format("%-22s %8s %10s %10s %10s %10s %10s%n", "section, us", "calls", "mean", "p50", "p99", "max", "total");
+        for (Section section : Section.values()) {
+            LatencyHistogram histogram = histograms[section.ordinal()];
+            report.format("%-22s %8d %10.1f %10.1f %10.1f %10.1f %10.0f%n", section, histogram.getTotalCount(),
+                    histogram.getMean() / 1000, histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                    histogram.getMax() / 1000.0, histogram.getTotalValue() / 1000.0);
+        }
+        report.format("%d strategies spent %d ms of %d ms budget, watchdog fired in %d", sum.profilers,
+                sum.spent / 1_000_000, sum.budget / 1_000_000, sum.exhausted);
+        out.println(report);
+    }
+}
@@ -0,0 +1,294 @@
+import model.Vehicle;
+import model.VehicleType;
+import model.VehicleUpdate;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Плотное хранилище техники, индексированное по идентификатору. Состояние каждой единицы лежит в примитивных массивах
+ * и обновляется на месте, поэтому применение {@link VehicleUpdate} не создаёт новых объектов.
+ * <p>
+ * Идентификаторы техники в игре выдаются подряд, начиная с единицы, так что массивы остаются плотными.
+ * <p>
+ * Дополнительно хранилище ведёт суммы координат и количество живой техники по каждой паре (сторона, тип), так что
+ * центр масс любой комбинации типов вычисляется за O(1), а также списки идентификаторов живой техники по тем же
+ * парам, по которым перебор выполняется без создания промежуточных коллекций.
+ */
+final class VehicleStore {
+    private static final VehicleType[] TYPES = VehicleType.values();
+    private static final int INITIAL_CAPACITY = 2048;
+
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private int[] durability = new int[INITIAL_CAPACITY];
+    private byte[] type = new byte[INITIAL_CAPACITY];
+    private boolean[] ally = new boolean[INITIAL_CAPACITY];
+    private boolean[] alive = new boolean[INITIAL_CAPACITY];
+    private boolean[] selected = new boolean[INITIAL_CAPACITY];
+    private int[] updateTick = new int[INITIAL_CAPACITY];
+    private long[] groups = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private final int[][] countBySideAndType = new int[2][TYPES.length];
+    private final double[][] sumXBySideAndType = new double[2][TYPES.length];
+    private final double[][] sumYBySideAndType = new double[2][TYPES.length];
+    private final int[][][] idsBySideAndType = new int[2][TYPES.length][INITIAL_CAPACITY / 4];
+    private int[] positionById = new int[INITIAL_CAPACITY];
+
+    /**
+     * Добавляет новую технику.
+     */
+    void add(Vehicle vehicle, boolean isAlly, int tick) {
+        int id = (int) vehicle.getId();
+        ensureCapacity(id + 1);
+
+        x[id] = vehicle.getX();
+        y[id] = vehicle.getY();
+        durability[id] = vehicle.getDurability();
+        type[id] = (byte) vehicle.getType().ordinal();
+        ally[id] = isAlly;
+        alive[id] = true;
+        updateTick[id] = tick;
+        groups[id] = toMask(vehicle.getGroups());
+        selected[id] = vehicle.isSelected();
+        size = Math.max(size, id + 1);
+        account(id, 1);
+        link(id);
+    }
+
+    /**
+     * Применяет изменение состояния техники на месте.
+     *
+     * @return Возвращает {@code true}, если и только если техника сместилась или изменился набор её групп. Признак
+     * выделения обновляется, но сам по себе изменением не считается.
+     */
+    boolean apply(VehicleUpdate update, int tick) {
+        int id = (int) update.getId();
+        if (update.getDurability() == 0) {
+            if (alive[id]) {
+                unlink(id);
+                account(id, -1);
+                alive[id] = false;
+            }
+            return false;
+        }
+
+        durability[id] = update.getDurability();
+        selected[id] = update.isSelected();
+        long updateGroups = toMask(update.getGroups());
+        if (update.getX() == x[id] && update.getY() == y[id] && updateGroups == groups[id]) {
+            return false;
+        }
+
+        account(id, -1);
+        x[id] = update.getX();
+        y[id] = update.getY();
+        account(id, 1);
+        groups[id] = updateGroups;
+        updateTick[id] = tick;
+        return true;
+    }
+
+    /**
+     * @return Верхняя граница (не включительно) идентификаторов, когда-либо попадавших в хранилище.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isAlive(int id) {
+        return id >= 0 && id < size && alive[id];
+    }
+
+    boolean isAlly(int id) {
+        return ally[id];
+    }
+
+    /**
+     * @return Выделена ли техника по последнему полученному состоянию. Для техники противника всегда {@code false}.
+     */
+    boolean isSelected(int id) {
+        return selected[id];
+    }
+
+    double getX(int id) {
+        return x[id];
+    }
+
+    double getY(int id) {
+        return y[id];
+    }
+
+    int getDurability(int id) {
+        return durability[id];
+    }
+
+    VehicleType getType(int id) {
+        return TYPES[type[id]];
+    }
+
+    int getTypeOrdinal(int id) {
+        return type[id];
+    }
+
+    int getUpdateTick(int id) {
+        return updateTick[id];
+    }
+
+    /**
+     * @return Битовая маска групп техники: бит {@code g} выставлен, если техника входит в группу {@code g}. Группы с
+     * номерами больше 63 не отслеживаются.
+     */
+    long getGroups(int id) {
+        return groups[id];
+    }
+
+    /**
+     * @param typeMask Битовая маска типов по {@link VehicleType#ordinal()}.
+     * @return Количество живой техники стороны указанных типов.
+     */
+    int count(boolean isAlly, int typeMask) {
+        int[] counts = countBySideAndType[side(isAlly)];
+        int result = 0;
+        for (int type = 0; type < counts.length; type++) {
+            if ((typeMask & (1 << type)) != 0) {
+                result += counts[type];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Сумма абсцисс живой техники стороны указанных типов.
+     */
+    double sumX(boolean isAlly, int typeMask) {
+        return sum(sumXBySideAndType[side(isAlly)], typeMask);
+    }
+
+    /**
+     * @return Сумма ординат живой техники стороны указанных типов.
+     */
+    double sumY(boolean isAlly, int typeMask) {
+        return sum(sumYBySideAndType[side(isAlly)], typeMask);
+    }
+
+    /**
+     * Перебирает живую технику стороны указанных типов.
+     */
+    void forEach(boolean isAlly, int typeMask, IntConsumer consumer) {
+        int side = side(isAlly);
+        int[][] idsByType = idsBySideAndType[side];
+        for (int type = 0; type < idsByType.length; type++) {
+            if ((typeMask & (1 << type)) == 0) {
+                continue;
+            }
+            int[] ids = idsByType[type];
+            for (int i = 0, count = countBySideAndType[side][type]; i < count; i++) {
+                consumer.accept(ids[i]);
+            }
+        }
+    }
+
+    /**
+     * @return Возвращает {@code true}, если хотя бы одна живая техника стороны указанных типов удовлетворяет условию.
+     */
+    boolean anyMatch(boolean isAlly, int typeMask, IntPredicate predicate) {
+        int side = side(isAlly);
+        int[][] idsByType = idsBySideAndType[side];
+        for (int type = 0; type < idsByType.length; type++) {
+            if ((typeMask & (1 << type)) == 0) {
+                continue;
+            }
+            int[] ids = idsByType[type];
+            for (int i = 0, count = countBySideAndType[side][type]; i < count; i++) {
+                if (predicate.test(ids[i])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static double sum(double[] sums, int typeMask) {
+        double result = 0;
+        for (int type = 0; type < sums.length; type++) {
+            if ((typeMask & (1 << type)) != 0) {
+                result += sums[type];
+            }
+        }
+        return result;
+    }
+
+    private static int side(boolean isAlly) {
+        return isAlly ? 0 : 1;
+    }
+
+    private void account(int id, int sign) {
+        int side = side(ally[id]);
+        int t = type[id];
+        int count = countBySideAndType[side][t] += sign;
+        if (count == 0) {
+            sumXBySideAndType[side][t] = 0;
+            sumYBySideAndType[side][t] = 0;
+        } else {
+            sumXBySideAndType[side][t] += sign * x[id];
+            sumYBySideAndType[side][t] += sign * y[id];
+        }
+    }
+
+    private void link(int id) {
+        int side = side(ally[id]);
+        int t = type[id];
+        int position = countBySideAndType[side][t] - 1;
+        int[] ids = idsBySideAndType[side][t];
+        if (position == ids.length) {
+            ids = idsBySideAndType[side][t] = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[position] = id;
+        positionById[id] = position;
+    }
+
+    /**
+     * Удаляет технику из списка её стороны и типа, перенося на освободившееся место последний элемент. Вызывается до
+     * уменьшения счётчика в {@link #account(int, int)}.
+     */
+    private void unlink(int id) {
+        int side = side(ally[id]);
+        int t = type[id];
+        int[] ids = idsBySideAndType[side][t];
+        int last = ids[countBySideAndType[side][t] - 1];
+        int position = positionById[id];
+        ids[position] = last;
+        positionById[last] = position;
+    }
+
+    private static long toMask(int[] groups) {
+        long mask = 0L;
+        for (int group : groups) {
+            if (group < Long.SIZE) {
+                mask |= 1L << group;
+            }
+        }
+        return mask;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        durability = Arrays.copyOf(durability, newCapacity);
+        type = Arrays.copyOf(type, newCapacity);
+        ally = Arrays.copyOf(ally, newCapacity);
+        alive = Arrays.copyOf(alive, newCapacity);
+        selected = Arrays.copyOf(selected, newCapacity);
+        updateTick = Arrays.copyOf(updateTick, newCapacity);
+        groups = Arrays.copyOf(groups, newCapacity);
+        positionById = Arrays.copyOf(positionById, newCapacity);
+    }
+}